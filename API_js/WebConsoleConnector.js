@@ -4,15 +4,41 @@
  https://github.com/mesacarlos
  2019-2020 Carlos Mesa under MIT License.
 */
+const WEBCONSOLE_BINARY_PROTOCOL = "webconsole.binary.v1";
+
+//Field names of the binary protocol, IDs start at 2. Keep in sync with BinaryOutput.java
+const WEBCONSOLE_BINARY_FIELDS = ["message", "time", "seq", "lines", "respondsTo", "token", "username", "as",
+	"consoleBatch", "usage", "free", "used", "max", "tps", "connectedPlayers", "maxPlayers", "players", "files",
+	"currentPath", "path", "name", "content", "encoding", "size", "is_binary", "since", "lastSeq", "truncated",
+	"filter", "minLevel", "loggers", "include", "exclude", "console", "connections", "enqueued", "dropped",
+	"pending", "lagMillis", "maxLagMillis", "globalBufferedBytes", "address", "bufferedFrames", "bufferedBytes",
+	"pendingLines", "coalescedLines", "droppedLines", "droppedFrames", "compressed", "bytesBeforeCompression",
+	"bytesAfterCompression", "timestamp", "level", "logger", "thread", "thrown", "id", "inFlight",
+	"commands", "virtualThreads", "queued", "types", "command", "limit", "running", "completed", "rejected",
+	"avgWaitMillis", "maxWaitMillis", "mainThread", "budgetMillis", "executed", "overBudgetTicks", "carriedOverTicks",
+	"lastTickMillis", "maxTickMillis", "results", "result", "error", "success", "output",
+	"resumeToken", "retryAfterMillis", "admission", "open", "maxTotal", "maxPerAddress", "rejectedTotal",
+	"rejectedPerAddress", "rateLimits", "throttled", "windows", "5s", "1m", "5m", "15m", "mspt", "min", "median", "p95",
+	"p99", "ticks", "status", "intervalMillis", "metrics", "more"];
+
 class WebConsoleConnector {
 	
-	constructor(serverURI) {
+	/**
+	* serverURI: WebSocket server URI
+	* binary: true to ask the server for the compact binary encoding instead of JSON
+	*/
+	constructor(serverURI, binary) {
 		this.serverURI = serverURI;
+		this.binary = binary === true;
 		this.token;
 		this.subscribers = []; //List of functions called when a new message arrive
 		this.messages = []; //All messages retrieved since connection start
 		this.commands = []; //EXEC Commands sent by user to this server
 		this.isLogged = false; //Is logged in with valid pasword or not
+		this.nextRequestId = 1;
+		this.pendingRequests = {}; //Requests sent with sendRequest waiting for their response, by id
+		this.resumeToken = null; //Restores the session on reconnect without sending LOGIN again
+		this.lastSeq = null; //Sequence number of the last console line received
 	}
 	
 	/**
@@ -20,7 +46,15 @@ class WebConsoleConnector {
 	*/
 	connect(){
 		var connector = this;
-		this.websocket = new WebSocket(this.serverURI);
+		var uri = this.serverURI;
+		if(this.resumeToken){
+			//Resume the session in the handshake, and get only the console lines missed meanwhile
+			uri += (uri.indexOf("?") < 0 ? "?" : "&") + "resume=" + encodeURIComponent(this.resumeToken);
+			if(this.lastSeq !== null)
+				uri += "&since=" + this.lastSeq;
+		}
+		this.websocket = this.binary ? new WebSocket(uri, WEBCONSOLE_BINARY_PROTOCOL) : new WebSocket(uri);
+		this.websocket.binaryType = "arraybuffer";
 		this.websocket.onopen = function(evt) { connector.onOpen(evt) };
 		this.websocket.onclose = function(evt) { connector.onClose(evt) };
 		this.websocket.onmessage = function(evt) { connector.onMessage(evt) };
@@ -45,18 +79,92 @@ class WebConsoleConnector {
 	* Internal function
 	*/
 	onMessage(evt){
-		var obj = JSON.parse(evt.data);
+		var obj = typeof evt.data === "string" ? JSON.parse(evt.data) : this.decodeBinary(evt.data);
 		
 		//Sucessfully connected? Save token
 		if(obj.status === 200){
 			this.token = obj.token;
 			this.isLogged = true;
+			if(obj.resumeToken)
+				this.resumeToken = obj.resumeToken;
+		}
+		this.trackSequence(obj);
+		
+		//Missed console lines that did not fit in a single response? Ask for the next ones
+		if(obj.status === 12 && obj.more === true)
+			this.sendToServer({command: "CONSOLE_RESUME", token: this.token, params: String(obj.lastSeq)});
+		
+		//Response to a request sent with sendRequest?
+		if(obj.id !== undefined && this.pendingRequests[obj.id] !== undefined){
+			var resolve = this.pendingRequests[obj.id];
+			delete this.pendingRequests[obj.id];
+			resolve(obj);
 		}
 		
 		this.notify(obj); //Notify all subscribers
 		this.messages.push(obj);
 	}
 	
+	/**
+	* Internal function. Remembers the newest console line received, to ask only for newer ones when resuming
+	*/
+	trackSequence(obj){
+		var seqs = [obj.seq, obj.lastSeq];
+		if(Array.isArray(obj.lines))
+			obj.lines.forEach(function(line) { seqs.push(line.seq); });
+		for(var i = 0; i < seqs.length; i++)
+			if(typeof seqs[i] === "number" && (this.lastSeq === null || seqs[i] > this.lastSeq))
+				this.lastSeq = seqs[i];
+	}
+	
+	/**
+	* Internal function. Decodes a message sent with the binary protocol into the same object JSON mode produces,
+	* except statusDescription, which is not sent.
+	*/
+	decodeBinary(data){
+		var bytes = new Uint8Array(data);
+		var pos = 0;
+		var utf8 = new TextDecoder("utf-8");
+		
+		function varint(){
+			var result = 0, multiplier = 1, b;
+			do {
+				b = bytes[pos++];
+				result += (b & 0x7F) * multiplier;
+				multiplier *= 128;
+			} while (b & 0x80);
+			return result;
+		}
+		function string(){
+			var length = varint();
+			var value = utf8.decode(bytes.subarray(pos, pos + length));
+			pos += length;
+			return value;
+		}
+		function fields(obj){
+			var id;
+			while ((id = varint()) !== 0)
+				obj[id === 1 ? string() : WEBCONSOLE_BINARY_FIELDS[id - 2]] = value();
+			return obj;
+		}
+		function value(){
+			switch (bytes[pos++]) {
+				case 1: return string();
+				case 2: var n = varint(); return n % 2 === 0 ? n / 2 : -(n + 1) / 2; //Zigzag
+				case 3: var v = new DataView(bytes.buffer, bytes.byteOffset + pos, 8).getFloat64(0, false); pos += 8; return v;
+				case 4: return true;
+				case 5: return false;
+				case 6: return null;
+				case 7: var count = varint(), array = []; for (var i = 0; i < count; i++) array.push(value()); return array;
+				case 8: return fields({});
+			}
+			throw new Error("Unknown binary value tag");
+		}
+		
+		var obj = {status: varint()};
+		return fields(obj);
+	}
+	
 	/**
 	* Internal function
 	*/
@@ -80,6 +188,21 @@ class WebConsoleConnector {
 		this.websocket.send(JSON.stringify(message));
 	}
 	
+	/**
+	* Sends a WebSocket command to Server tagged with a request id. Several requests can be in flight at once.
+	* Returns a Promise resolved with the first response echoing that id.
+	*/
+	sendRequest(message){
+		var id = String(this.nextRequestId++);
+		var connector = this;
+		var promise = new Promise(function(resolve) {
+			connector.pendingRequests[id] = resolve;
+		});
+		message.id = id;
+		this.sendToServer(message);
+		return promise;
+	}
+	
 	/**
 	* Adds a function to subscriber list
 	*/
@@ -0,0 +1,70 @@
+package es.mesacarlos.webconsole.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.framing.Framedata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import es.mesacarlos.webconsole.console.ConsoleLine;
+import es.mesacarlos.webconsole.websocket.response.ConsoleOutput;
+
+/**
+ * Cost of sending one console line to a number of viewers.
+ * <ul>
+ * <li>perConnection: the previous path. Every viewer got its own ConsoleOutput, JSON text and frame,
+ * as WebSocket.send encodes the frame again for each connection.</li>
+ * <li>shared: the current path. The line is serialized once, and WebSocketServer.broadcast builds one frame
+ * that every viewer sends.</li>
+ * </ul>
+ * Writing the frame to each socket costs the same in both paths, so it is left out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConsoleBroadcastBenchmark {
+	@Param({ "1", "10", "100" })
+	public int viewers;
+
+	private final Draft_6455 draft = new Draft_6455();
+	private final ConsoleLine line = new ConsoleLine("[Server thread/INFO]: Steve joined the game with entity id 4242 at ([world]12.5, 64.0, -3.5)",
+			Level.INFO, "Minecraft");
+
+	@Benchmark
+	public long perConnection() {
+		long size = 0;
+		for (int i = 0; i < viewers; i++)
+			size += frameSize(draft.createFrames(new ConsoleOutput(line).toJSON(), false));
+		return size;
+	}
+
+	@Benchmark
+	public long shared() {
+		List<Framedata> frames = draft.createFrames(new ConsoleOutput(line).toJSON(), false);
+		long size = 0;
+		for (int i = 0; i < viewers; i++)
+			size += frameSize(frames);
+		return size;
+	}
+
+	private static long frameSize(List<Framedata> frames) {
+		long size = 0;
+		for (Framedata frame : frames)
+			size += frame.getPayloadData().remaining();
+		return size;
+	}
+}
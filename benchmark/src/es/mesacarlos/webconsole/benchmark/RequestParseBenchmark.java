@@ -0,0 +1,122 @@
+package es.mesacarlos.webconsole.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import es.mesacarlos.webconsole.util.JsonUtils;
+import es.mesacarlos.webconsole.websocket.WSRequest;
+
+/**
+ * Cost of reading the command, token and params of a client message.
+ * <ul>
+ * <li>jsonUtils: the previous path of WSServer.onMessage. Every property check and lookup parsed the whole message
+ * again, and each validity check parsed it twice more with a new Gson.</li>
+ * <li>wsRequest: the current single pass with a streaming reader.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestParseBenchmark {
+	/**
+	 * exec: a short EXEC message. fileWrite: a FILE_WRITE message with 1 MiB of content.
+	 */
+	@Param({ "exec", "fileWrite" })
+	public String message;
+
+	private String json;
+
+	@Setup
+	public void setup() {
+		if (message.equals("exec")) {
+			json = "{\"command\":\"EXEC\",\"token\":\"b1946ac92492d2347c6235b4d2611184\",\"params\":\"say hello\"}";
+			return;
+		}
+		StringBuilder content = new StringBuilder(1 << 20);
+		while (content.length() < 1 << 20)
+			content.append("key-").append(content.length()).append(": value\\n");
+		json = "{\"command\":\"FILE_WRITE\",\"token\":\"b1946ac92492d2347c6235b4d2611184\",\"params\":\"{\\\"path\\\":\\\"server.properties\\\",\\\"content\\\":\\\""
+				+ content + "\\\"}\"}";
+	}
+
+	@Benchmark
+	public long jsonUtils() {
+		return parseWithJsonUtils(json);
+	}
+
+	@Benchmark
+	public long wsRequest() {
+		return parseWithWSRequest(json);
+	}
+
+	private static long parseWithWSRequest(String message) {
+		WSRequest request = WSRequest.parse(message);
+		return request.getCommand().length() + request.getToken().length() + request.getParams().length();
+	}
+
+	/**
+	 * Same checks and lookups as WSServer.onMessage did before WSRequest
+	 */
+	private static long parseWithJsonUtils(String message) {
+		if (!containsStringProperty(message, JsonUtils.COMMAND_PROPERTY)
+				|| (!containsStringProperty(message, JsonUtils.TOKEN_PROPERTY) && !getStringProperty(message, JsonUtils.COMMAND_PROPERTY).equals("LOGIN")))
+			return 0;
+		String command = getStringProperty(message, JsonUtils.COMMAND_PROPERTY);
+		String token = getStringProperty(message, JsonUtils.TOKEN_PROPERTY);
+		String params = getStringProperty(message, JsonUtils.PARAMS_PROPERTY);
+		return command.length() + token.length() + params.length();
+	}
+
+	// Removed JsonUtils helpers, kept here as the baseline
+
+	private static boolean isValidJson(String json) {
+		Gson gson = new Gson();
+		try {
+			gson.fromJson(json, Object.class);
+			Object jsonObjType = gson.fromJson(json, Object.class).getClass();
+			return !jsonObjType.equals(String.class);
+		} catch (com.google.gson.JsonSyntaxException ex) {
+			return false;
+		}
+	}
+
+	private static boolean containsStringProperty(String jsonString, String property) {
+		if (!isValidJson(jsonString))
+			return false;
+		JsonObject obj = JsonParser.parseString(jsonString).getAsJsonObject();
+		JsonElement elem = obj.get(property);
+		if (elem == null)
+			return false;
+		try {
+			elem.getAsString();
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private static String getStringProperty(String jsonString, String property) {
+		JsonObject obj = JsonParser.parseString(jsonString).getAsJsonObject();
+		JsonElement result = obj.get(property);
+		return result != null ? result.getAsString() : "";
+	}
+}
@@ -0,0 +1,99 @@
+package es.mesacarlos.webconsole.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import es.mesacarlos.webconsole.config.CommandWhitelist;
+
+/**
+ * Cost of checking an EXEC command against a large whitelist, like the ones used for moderators.
+ * Each operation checks the next command of a fixed random set.
+ * <ul>
+ * <li>linear: the previous ExecCommand check, splitting the command and every entry on each call.</li>
+ * <li>trie: the current CommandWhitelist.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WhitelistBenchmark {
+	private static final int ENTRIES = 600;
+	private static final int COMMANDS = 1_000;
+
+	private List<String> entries;
+	private String[] commands;
+	private CommandWhitelist whitelist;
+	private int next;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		String[] verbs = { "tp", "give", "kick", "ban", "gamemode", "effect", "whitelist", "say", "time", "weather" };
+		entries = new ArrayList<String>(ENTRIES);
+		for (int i = 0; i < ENTRIES; i++)
+			entries.add(verbs[i % verbs.length] + " player" + i + (i % 3 == 0 ? " world" : ""));
+		commands = new String[COMMANDS];
+		for (int i = 0; i < COMMANDS; i++)
+			commands[i] = verbs[random.nextInt(verbs.length)] + " Player" + random.nextInt(ENTRIES * 2) + " world extra";
+
+		whitelist = new CommandWhitelist(true, false, entries);
+		for (String command : commands) {
+			if (whitelist.allows(command) != linearAllows(entries, command))
+				throw new IllegalStateException("Matchers disagree on " + command);
+		}
+	}
+
+	@Benchmark
+	public boolean linear() {
+		return linearAllows(entries, nextCommand());
+	}
+
+	@Benchmark
+	public boolean trie() {
+		return whitelist.allows(nextCommand());
+	}
+
+	private String nextCommand() {
+		String command = commands[next];
+		next = (next + 1) % COMMANDS;
+		return command;
+	}
+
+	/**
+	 * Previous ExecCommand whitelist check, with a bounds check added for commands shorter than an entry
+	 */
+	private static boolean linearAllows(List<String> whitelistedCommands, String command) {
+		String[] splitCommand = command.split(" ");
+		for (String whitelistedCommand : whitelistedCommands) {
+			String[] splitWhitelistedCommand = whitelistedCommand.split(" ");
+			if (equalsArray(splitCommand, splitWhitelistedCommand))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean equalsArray(String[] splitCommand, String[] splitWhitelistedCommand) {
+		if (splitCommand.length < splitWhitelistedCommand.length)
+			return false;
+		for (int i = 0; i < splitWhitelistedCommand.length; i++)
+			if (!splitCommand[i].equalsIgnoreCase(splitWhitelistedCommand[i]))
+				return false;
+		return true;
+	}
+}
@@ -14,8 +14,13 @@ import org.bukkit.plugin.java.JavaPlugin;
 import org.java_websocket.server.DefaultSSLWebSocketServerFactory;
 
 import es.mesacarlos.webconsole.config.ConfigManager;
+import es.mesacarlos.webconsole.console.ConsoleBroadcaster;
+import es.mesacarlos.webconsole.console.ConsoleScrollback;
+import es.mesacarlos.webconsole.console.LogStormGuard;
+import es.mesacarlos.webconsole.console.OverflowPolicy;
 import es.mesacarlos.webconsole.minecraft.WebConsoleCommand;
 import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.util.MainThreadExecutor;
 import es.mesacarlos.webconsole.util.TpsTracker;
 import es.mesacarlos.webconsole.websocket.WSServer;
 
@@ -23,10 +28,14 @@ public class WebConsole extends JavaPlugin {
     
     private WSServer server;
     private Thread wsThread;
+    private ConsoleBroadcaster consoleBroadcaster;
+    private MainThreadExecutor mainThreadExecutor;
 
     @Override
     public void onEnable() {
         Bukkit.getServer().getScheduler().scheduleSyncRepeatingTask(this, new TpsTracker(), 100L, 1L);
+        mainThreadExecutor = new MainThreadExecutor(ConfigManager.getInstance().getMainThreadBudgetMicros());
+        Bukkit.getServer().getScheduler().scheduleSyncRepeatingTask(this, mainThreadExecutor, 1L, 1L);
         Internationalization.setCurrentLocale(ConfigManager.getInstance().getLanguage());
         
         try {
@@ -35,16 +44,32 @@ public class WebConsole extends JavaPlugin {
             Bukkit.getLogger().warning("[WebConsole] Failed to start WebSocket server: " + e.getMessage());
         }
 
-        org.apache.logging.log4j.core.Filter f = new es.mesacarlos.webconsole.util.LogFilter(getWSServer());
+        consoleBroadcaster = new ConsoleBroadcaster(getWSServer(),
+            ConfigManager.getInstance().getConsoleQueueCapacity(),
+            OverflowPolicy.fromString(ConfigManager.getInstance().getConsoleOverflowPolicy()),
+            ConfigManager.getInstance().getConsoleBlockTimeoutMillis(),
+            ConfigManager.getInstance().getConsoleBatchWindowMillis(),
+            ConfigManager.getInstance().getConsoleBatchMaxBytes(),
+            new ConsoleScrollback(ConfigManager.getInstance().getScrollbackLines(),
+                ConfigManager.getInstance().getScrollbackBytes()),
+            new LogStormGuard(ConfigManager.getInstance().getDuplicateWindowMillis(),
+                ConfigManager.getInstance().getDuplicateHistory(),
+                ConfigManager.getInstance().getRateLimitPerSecond(),
+                ConfigManager.getInstance().getRateLimitBurst()));
+        consoleBroadcaster.start();
+
+        org.apache.logging.log4j.core.Filter f = new es.mesacarlos.webconsole.util.LogFilter(consoleBroadcaster);
         ((org.apache.logging.log4j.core.Logger) org.apache.logging.log4j.LogManager.getRootLogger()).addFilter(f);
         
-        getCommand("WebConsole").setExecutor(new WebConsoleCommand(this.getDescription().getVersion()));
+        getCommand("WebConsole").setExecutor(new WebConsoleCommand(this.getDescription().getVersion(), getWSServer(), consoleBroadcaster));
     }
 
     @Override
     public void onDisable() {
         try {
+            if (consoleBroadcaster != null) consoleBroadcaster.stop();
             if (server != null) server.stop();
+            if (mainThreadExecutor != null) mainThreadExecutor.shutdown();
             if (wsThread != null) wsThread = null;
         } catch (Exception e) {
             e.printStackTrace();
@@ -110,4 +135,16 @@ public class WebConsole extends JavaPlugin {
     public WSServer getWSServer() {
         return server;
     }
+
+    public ConsoleBroadcaster getConsoleBroadcaster() {
+        return consoleBroadcaster;
+    }
+
+    /**
+     * Executor for command work that must run on the main server thread, within a time budget per tick
+     * @return main thread executor
+     */
+    public MainThreadExecutor getMainThreadExecutor() {
+        return mainThreadExecutor;
+    }
 }
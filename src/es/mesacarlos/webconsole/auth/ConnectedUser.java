@@ -10,6 +10,7 @@ public class ConnectedUser {
 	private InetSocketAddress socketAddress;
 	private String token;
 	private UserType userType;
+	private boolean consoleBatching;
 	
 	public ConnectedUser(InetSocketAddress socketAddress, String username, String token, UserType userType) {
 		this.socketAddress = socketAddress;
@@ -18,6 +19,11 @@ public class ConnectedUser {
 		this.userType = userType;
 	}
 	
+	public ConnectedUser(InetSocketAddress socketAddress, String username, String token, UserType userType, boolean consoleBatching) {
+		this(socketAddress, username, token, userType);
+		this.consoleBatching = consoleBatching;
+	}
+	
 	public String getUsername() {
 		return username;
 	}
@@ -34,6 +40,14 @@ public class ConnectedUser {
 		return userType;
 	}
 	
+	/**
+	 * Whether this user receives console lines coalesced in CONSOLE_BATCH frames instead of one frame per line
+	 * @return true if batched mode was negotiated at login
+	 */
+	public boolean isConsoleBatching() {
+		return consoleBatching;
+	}
+	
 	public String toString() {
 		return Internationalization.getPhrase("user-tostring", username, socketAddress, userType);
 	}
@@ -2,16 +2,22 @@ package es.mesacarlos.webconsole.auth;
 
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.java_websocket.WebSocket;
+
+/**
+ * Registry of logged in users, indexed by socket address. It is safe to use from any thread.
+ * The user of a connection is also attached to its WebSocket, so code holding the connection gets it without any lookup.
+ */
 public class LoginManager {
-	private ArrayList<ConnectedUser> loggedInUsers = new ArrayList<ConnectedUser>();
-	private static LoginManager instance;
+	private final ConcurrentHashMap<InetSocketAddress, ConnectedUser> usersByAddress = new ConcurrentHashMap<InetSocketAddress, ConnectedUser>();
+	private static final LoginManager instance = new LoginManager();
 	
 	private LoginManager() {}
 	
 	public static LoginManager getInstance() {
-		if(instance == null)
-			instance = new LoginManager();
 		return instance;
 	}
 	
@@ -20,7 +26,28 @@ public class LoginManager {
 	 * @param user User to login
 	 */
 	public void logIn(ConnectedUser user) {
-		loggedInUsers.add(user);
+		usersByAddress.put(user.getSocketAddress(), user);
+	}
+	
+	/**
+	 * Logs user in and attaches it to its connection
+	 * @param conn Connection the user logged in from
+	 * @param user User to login
+	 */
+	public void logIn(WebSocket conn, ConnectedUser user) {
+		logIn(user);
+		conn.setAttachment(user);
+	}
+	
+	/**
+	 * Attaches the user logged in from the address of a new connection to it, if any
+	 * @param conn New connection
+	 * @return User object, null if no user logged in from that address
+	 */
+	public ConnectedUser resume(WebSocket conn) {
+		ConnectedUser user = getUser(conn.getRemoteSocketAddress());
+		conn.setAttachment(user);
+		return user;
 	}
 	
 	/**
@@ -28,9 +55,18 @@ public class LoginManager {
 	 * @param address User to logout
 	 */
 	public void logOut(InetSocketAddress address) {
-		for(ConnectedUser user : loggedInUsers.toArray(new ConnectedUser[loggedInUsers.size()]))
-			if(user.getSocketAddress().equals(address))
-				loggedInUsers.remove(user);
+		if (address == null)
+			return;
+		usersByAddress.remove(address);
+	}
+	
+	/**
+	 * Logs out the user of a connection and detaches it
+	 * @param conn Connection to logout
+	 */
+	public void logOut(WebSocket conn) {
+		conn.setAttachment(null);
+		logOut(conn.getRemoteSocketAddress());
 	}
 	
 	/**
@@ -39,10 +75,17 @@ public class LoginManager {
 	 * @return User object, null if no user logged in from that address
 	 */
 	public ConnectedUser getUser(InetSocketAddress address) {
-		for(ConnectedUser user : loggedInUsers)
-			if(user.getSocketAddress().equals(address))
-				return user;
-		return null;
+		return address == null ? null : usersByAddress.get(address);
+	}
+	
+	/**
+	 * Get the user attached to a connection, without any lookup
+	 * @param conn Connection
+	 * @return User object, null if the connection has no logged in user
+	 */
+	public ConnectedUser getUser(WebSocket conn) {
+		Object attachment = conn.getAttachment();
+		return attachment instanceof ConnectedUser ? (ConnectedUser) attachment : null;
 	}
 	
 	/**
@@ -51,10 +94,19 @@ public class LoginManager {
 	 * @return true if user is logged in, false otherwise
 	 */
 	public boolean isLoggedIn(InetSocketAddress address, String token) {
-		for(ConnectedUser user : loggedInUsers)
-			if(user.getSocketAddress().equals(address) && user.getToken().equals(token))
-				return true;
-		return false;
+		ConnectedUser user = getUser(address);
+		return user != null && user.getToken().equals(token);
+	}
+	
+	/**
+	 * Check if the user attached to a connection is logged in with the given token
+	 * @param conn Connection to check
+	 * @param token Token sent with the request
+	 * @return true if user is logged in, false otherwise
+	 */
+	public boolean isLoggedIn(WebSocket conn, String token) {
+		ConnectedUser user = getUser(conn);
+		return user != null && user.getToken().equals(token);
 	}
 	
 	/**
@@ -63,18 +115,15 @@ public class LoginManager {
 	 * @return true if user is logged in, false otherwise
 	 */
 	public boolean isSocketConnected(InetSocketAddress address) {
-		for(ConnectedUser user : loggedInUsers)
-			if(user.getSocketAddress().equals(address))
-				return true;
-		return false;
+		return getUser(address) != null;
 	}
 	
 	/**
 	 * Retrieve the full logged-in user list
-	 * @return list of logged in users
+	 * @return snapshot of logged in users
 	 */
-	public ArrayList<ConnectedUser> getLoggedInUsers() {
-		return loggedInUsers;
+	public List<ConnectedUser> getLoggedInUsers() {
+		return new ArrayList<ConnectedUser>(usersByAddress.values());
 	}
 	
-}
\ No newline at end of file
+}
@@ -0,0 +1,158 @@
+package es.mesacarlos.webconsole.auth;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits login attempts per IP address with a token bucket. Every failed login in a row doubles the time the
+ * address is locked out, from the base lockout up to the maximum. A successful login forgives the failures,
+ * and so does going the maximum lockout time without failing.
+ * Locked out addresses are also refused during the WebSocket handshake, before any request is read.
+ */
+public class LoginThrottle {
+	private static final int SWEEP_THRESHOLD = 1024;
+
+	private final ConcurrentHashMap<InetAddress, Bucket> buckets = new ConcurrentHashMap<InetAddress, Bucket>();
+	private final int burst;
+	private final double attemptsPerNano;
+	private final int failuresBeforeLockout;
+	private final long lockoutNanos;
+	private final long maxLockoutNanos;
+
+	/**
+	 * @param attemptsPerMinute Sustained login attempts allowed per address
+	 * @param burst Attempts an address can make at once
+	 * @param failuresBeforeLockout Failed logins in a row before the address is locked out
+	 * @param lockoutSeconds First lockout time, doubled by every further failure
+	 * @param maxLockoutSeconds Maximum lockout time
+	 */
+	public LoginThrottle(int attemptsPerMinute, int burst, int failuresBeforeLockout, int lockoutSeconds, int maxLockoutSeconds) {
+		this.burst = Math.max(1, burst);
+		this.attemptsPerNano = Math.max(1, attemptsPerMinute) / (double) TimeUnit.MINUTES.toNanos(1);
+		this.failuresBeforeLockout = Math.max(1, failuresBeforeLockout);
+		this.lockoutNanos = TimeUnit.SECONDS.toNanos(Math.max(1, lockoutSeconds));
+		this.maxLockoutNanos = Math.max(lockoutNanos, TimeUnit.SECONDS.toNanos(maxLockoutSeconds));
+	}
+
+	/**
+	 * Takes a login attempt from the bucket of an address
+	 * @param address Client address
+	 * @return true if the attempt may be checked, false if the address is locked out or out of attempts
+	 */
+	public boolean tryAttempt(InetSocketAddress address) {
+		InetAddress ip = ipOf(address);
+		if (ip == null)
+			return true;
+		if (buckets.size() > SWEEP_THRESHOLD)
+			sweep();
+		Bucket bucket = buckets.computeIfAbsent(ip, k -> new Bucket(burst));
+		return bucket.tryAcquire(System.nanoTime());
+	}
+
+	/**
+	 * Check if an address is locked out, without taking an attempt
+	 * @param address Client address
+	 * @return true if connections from this address must be refused
+	 */
+	public boolean isLockedOut(InetSocketAddress address) {
+		InetAddress ip = ipOf(address);
+		Bucket bucket = ip == null ? null : buckets.get(ip);
+		return bucket != null && bucket.isLockedOut(System.nanoTime());
+	}
+
+	/**
+	 * Records a failed login
+	 * @param address Client address
+	 * @return lockout started by this failure in seconds, 0 if the address is not locked out by it
+	 */
+	public long onFailure(InetSocketAddress address) {
+		InetAddress ip = ipOf(address);
+		if (ip == null)
+			return 0;
+		Bucket bucket = buckets.computeIfAbsent(ip, k -> new Bucket(burst));
+		return TimeUnit.NANOSECONDS.toSeconds(bucket.onFailure(System.nanoTime()));
+	}
+
+	/**
+	 * Records a successful login, forgiving the previous failures of the address
+	 * @param address Client address
+	 */
+	public void onSuccess(InetSocketAddress address) {
+		InetAddress ip = ipOf(address);
+		if (ip != null)
+			buckets.remove(ip);
+	}
+
+	private static InetAddress ipOf(InetSocketAddress address) {
+		return address == null ? null : address.getAddress();
+	}
+
+	/**
+	 * Forgets addresses with a full bucket and no lockout, so spraying from many addresses does not grow the map forever
+	 */
+	private void sweep() {
+		long now = System.nanoTime();
+		for (Iterator<Bucket> it = buckets.values().iterator(); it.hasNext();)
+			if (it.next().isIdle(now))
+				it.remove();
+	}
+
+	private class Bucket {
+		private double tokens;
+		private long refilledAt;
+		private int failures;
+		private long lastFailure;
+		private long lockedUntil;
+		private boolean locked;
+
+		Bucket(int tokens) {
+			this.tokens = tokens;
+			this.refilledAt = System.nanoTime();
+		}
+
+		synchronized boolean tryAcquire(long now) {
+			if (isLockedOut(now))
+				return false;
+			refill(now);
+			if (tokens < 1)
+				return false;
+			tokens--;
+			return true;
+		}
+
+		synchronized boolean isLockedOut(long now) {
+			if (locked && now - lockedUntil >= 0)
+				locked = false;
+			return locked;
+		}
+
+		synchronized long onFailure(long now) {
+			if (failures > 0 && now - lastFailure > maxLockoutNanos)
+				failures = 0; // Forgiven
+			failures++;
+			lastFailure = now;
+			if (failures < failuresBeforeLockout)
+				return 0;
+			int doublings = Math.min(failures - failuresBeforeLockout, 30);
+			long lockout = Math.min(maxLockoutNanos, lockoutNanos << doublings);
+			if (lockout < 0)
+				lockout = maxLockoutNanos; // Overflow
+			locked = true;
+			lockedUntil = now + lockout;
+			return lockout;
+		}
+
+		synchronized boolean isIdle(long now) {
+			refill(now);
+			return !isLockedOut(now) && tokens >= burst && (failures == 0 || now - lastFailure > maxLockoutNanos);
+		}
+
+		private void refill(long now) {
+			tokens = Math.min(burst, tokens + (now - refilledAt) * attemptsPerNano);
+			refilledAt = now;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package es.mesacarlos.webconsole.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2 password verifiers, stored in config.yml as "pbkdf2$sha256$iterations$salt$hash".
+ * Passwords not in that format are plain text from older configurations and are compared as is.
+ */
+public final class PasswordHash {
+	private static final String PREFIX = "pbkdf2$sha256$";
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+	private static final int SALT_BYTES = 16;
+	private static final int HASH_BITS = 256;
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private PasswordHash() {}
+
+	/**
+	 * Check if a stored password is already a PBKDF2 verifier
+	 * @param stored Password field from config.yml
+	 * @return true if hashed, false if it is plain text
+	 */
+	public static boolean isHashed(String stored) {
+		return stored != null && stored.startsWith(PREFIX);
+	}
+
+	/**
+	 * Creates a verifier for a password, with a new random salt
+	 * @param password Plain text password
+	 * @param iterations PBKDF2 iterations
+	 * @return verifier to store in config.yml
+	 */
+	public static String hash(String password, int iterations) {
+		byte[] salt = new byte[SALT_BYTES];
+		RANDOM.nextBytes(salt);
+		Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+		return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(pbkdf2(password, salt, iterations));
+	}
+
+	/**
+	 * Check a password against a stored verifier, in constant time
+	 * @param password Password sent by the client
+	 * @param stored Password field from config.yml, hashed or plain text
+	 * @return true if the password is correct
+	 */
+	public static boolean verify(String password, String stored) {
+		if (password == null || stored == null)
+			return false;
+		if (!isHashed(stored))
+			return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+
+		String[] parts = stored.substring(PREFIX.length()).split("\\$");
+		if (parts.length != 3)
+			return false;
+		try {
+			int iterations = Integer.parseInt(parts[0]);
+			byte[] salt = Base64.getDecoder().decode(parts[1]);
+			byte[] expected = Base64.getDecoder().decode(parts[2]);
+			return iterations > 0 && MessageDigest.isEqual(expected, pbkdf2(password, salt, iterations));
+		} catch (IllegalArgumentException e) {
+			return false; // Malformed verifier
+		}
+	}
+
+	private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+		try {
+			return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(ALGORITHM + " is not available", e); // Required in every Java 8 runtime
+		} finally {
+			spec.clearPassword();
+		}
+	}
+}
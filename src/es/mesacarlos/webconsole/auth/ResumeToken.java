@@ -0,0 +1,132 @@
+package es.mesacarlos.webconsole.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Signed, expiring tokens that let a client restore its session when it reconnects, without sending LOGIN again.
+ * A token holds the username, the session options and its expiry, signed with HMAC-SHA256 and a key created
+ * when the plugin starts, so restarting the server invalidates every token. It also holds a fingerprint of the
+ * stored password of the user, so changing the password invalidates the tokens issued before.
+ */
+public class ResumeToken {
+	private static final String ALGORITHM = "HmacSHA256";
+	private static final int FINGERPRINT_BYTES = 8;
+
+	private final SecretKeySpec key;
+	private final long lifetimeMillis;
+
+	/**
+	 * @param lifetimeMinutes Time a token stays valid after it is issued
+	 */
+	public ResumeToken(long lifetimeMinutes) {
+		byte[] secret = new byte[32];
+		new SecureRandom().nextBytes(secret);
+		this.key = new SecretKeySpec(secret, ALGORITHM);
+		this.lifetimeMillis = TimeUnit.MINUTES.toMillis(lifetimeMinutes);
+	}
+
+	/**
+	 * Issues a token for a logged in user
+	 * @param user Logged in user
+	 * @param storedPassword Password field of the user in config.yml
+	 * @return token
+	 */
+	public String issue(ConnectedUser user, String storedPassword) {
+		// Username goes last, so it can contain anything
+		String payload = (user.isConsoleBatching() ? 1 : 0) + "\n" + (System.currentTimeMillis() + lifetimeMillis) + "\n"
+				+ fingerprint(storedPassword) + "\n" + user.getUsername();
+		byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+		Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+		return base64.encodeToString(bytes) + "." + base64.encodeToString(sign(bytes));
+	}
+
+	/**
+	 * Reads a token presented by a client
+	 * @param token Token
+	 * @return claims of the token, null if it is malformed or its signature is wrong
+	 */
+	public Claims parse(String token) {
+		int dot = token.indexOf('.');
+		if (dot < 0)
+			return null;
+		try {
+			byte[] payload = Base64.getUrlDecoder().decode(token.substring(0, dot));
+			byte[] signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+			if (!MessageDigest.isEqual(signature, sign(payload)))
+				return null;
+
+			String[] parts = new String(payload, StandardCharsets.UTF_8).split("\n", 4);
+			if (parts.length != 4)
+				return null;
+			return new Claims(parts[3], parts[0].equals("1"), Long.parseLong(parts[1]), parts[2]);
+		} catch (IllegalArgumentException e) {
+			return null; // Not base64, or not a number
+		}
+	}
+
+	private byte[] sign(byte[] payload) {
+		try {
+			Mac mac = Mac.getInstance(ALGORITHM);
+			mac.init(key);
+			return mac.doFinal(payload);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(ALGORITHM + " is not available", e); // Required in every Java 8 runtime
+		}
+	}
+
+	private static String fingerprint(String storedPassword) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(String.valueOf(storedPassword).getBytes(StandardCharsets.UTF_8));
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, FINGERPRINT_BYTES));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	/**
+	 * Contents of a token whose signature is valid
+	 */
+	public static class Claims {
+		private final String username;
+		private final boolean consoleBatching;
+		private final long expiresAt;
+		private final String fingerprint;
+
+		private Claims(String username, boolean consoleBatching, long expiresAt, String fingerprint) {
+			this.username = username;
+			this.consoleBatching = consoleBatching;
+			this.expiresAt = expiresAt;
+			this.fingerprint = fingerprint;
+		}
+
+		public String getUsername() {
+			return username;
+		}
+
+		public boolean isConsoleBatching() {
+			return consoleBatching;
+		}
+
+		public boolean isExpired() {
+			return System.currentTimeMillis() > expiresAt;
+		}
+
+		/**
+		 * Check if the password of the user is still the one it had when the token was issued
+		 * @param storedPassword Current password field of the user in config.yml
+		 * @return true if it did not change
+		 */
+		public boolean matchesPassword(String storedPassword) {
+			return MessageDigest.isEqual(fingerprint.getBytes(StandardCharsets.UTF_8), fingerprint(storedPassword).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package es.mesacarlos.webconsole.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Command whitelist of an user, compiled into a case insensitive trie of words when the configuration is loaded.
+ * A command matches an entry if it starts with the words of the entry, so checking a command costs one map
+ * lookup per word instead of comparing it with every entry.
+ *
+ * Besides literal words, an entry can use "*" to match any single word, and words containing "*" or "?"
+ * as patterns for an argument. For example, "tp * world_*" matches "tp Steve world_nether".
+ */
+public final class CommandWhitelist {
+	private final boolean enabled;
+	private final boolean actsAsBlacklist;
+	private final Node root = new Node();
+
+	/**
+	 * @param enabled Whether the whitelist is checked at all
+	 * @param actsAsBlacklist If true, matching commands are denied instead of allowed
+	 * @param commands Whitelisted commands. A command matches an entry if it starts with the words of the entry.
+	 */
+	public CommandWhitelist(boolean enabled, boolean actsAsBlacklist, List<String> commands) {
+		this.enabled = enabled;
+		this.actsAsBlacklist = actsAsBlacklist;
+		for (String command : commands)
+			add(command);
+	}
+
+	private void add(String command) {
+		List<String> words = split(command);
+		if (words.isEmpty())
+			return; // An empty entry would match every command
+		Node node = root;
+		for (String word : words)
+			node = node.child(word);
+		node.terminal = true;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public boolean isActsAsBlacklist() {
+		return actsAsBlacklist;
+	}
+
+	/**
+	 * Check if a command may be run
+	 * @param command Command sent by user
+	 * @return true if the command is allowed
+	 */
+	public boolean allows(String command) {
+		if (!enabled) //Skip whitelist check.
+			return true;
+
+		//If acts as blacklist, matching commands are not allowed
+		return matches(command) != actsAsBlacklist;
+	}
+
+	/**
+	 * Check if a command starts with the words of any entry
+	 * @param command Command sent by user
+	 * @return true if the command matches an entry
+	 */
+	public boolean matches(String command) {
+		return root.matches(split(command), 0);
+	}
+
+	/**
+	 * Splits a command into lower case words. Any run of whitespace separates words, so extra spaces
+	 * cannot be used to get a command past the list.
+	 * @param command Command
+	 * @return words
+	 */
+	private static List<String> split(String command) {
+		List<String> words = new ArrayList<String>();
+		int length = command.length();
+		int i = 0;
+		while (i < length) {
+			while (i < length && Character.isWhitespace(command.charAt(i)))
+				i++;
+			int start = i;
+			while (i < length && !Character.isWhitespace(command.charAt(i)))
+				i++;
+			if (i > start)
+				words.add(command.substring(start, i).toLowerCase(Locale.ROOT));
+		}
+		return words;
+	}
+
+	/**
+	 * Word of the trie. Literal words are looked up in a map, wildcards and patterns are tried in order after them.
+	 */
+	private static final class Node {
+		private final Map<String, Node> words = new HashMap<String, Node>();
+		private Node anyWord;
+		private List<PatternEdge> patterns;
+		private boolean terminal;
+
+		Node child(String word) {
+			if (word.equals("*")) {
+				if (anyWord == null)
+					anyWord = new Node();
+				return anyWord;
+			}
+			if (word.indexOf('*') < 0 && word.indexOf('?') < 0)
+				return words.computeIfAbsent(word, w -> new Node());
+
+			if (patterns == null)
+				patterns = new ArrayList<PatternEdge>();
+			for (PatternEdge edge : patterns)
+				if (edge.source.equals(word))
+					return edge.node;
+			PatternEdge edge = new PatternEdge(word);
+			patterns.add(edge);
+			return edge.node;
+		}
+
+		boolean matches(List<String> command, int index) {
+			if (terminal)
+				return true;
+			if (index >= command.size())
+				return false; // Command is shorter than the entries below this word
+			String word = command.get(index);
+
+			Node next = words.get(word);
+			if (next != null && next.matches(command, index + 1))
+				return true;
+			if (anyWord != null && anyWord.matches(command, index + 1))
+				return true;
+			if (patterns != null)
+				for (PatternEdge edge : patterns)
+					if (edge.pattern.matcher(word).matches() && edge.node.matches(command, index + 1))
+						return true;
+			return false;
+		}
+	}
+
+	/**
+	 * Argument pattern: "*" matches any run of characters and "?" a single character
+	 */
+	private static final class PatternEdge {
+		private final String source;
+		private final Pattern pattern;
+		private final Node node = new Node();
+
+		PatternEdge(String source) {
+			this.source = source;
+			StringBuilder regex = new StringBuilder();
+			int literalStart = 0;
+			for (int i = 0; i < source.length(); i++) {
+				char c = source.charAt(i);
+				if (c == '*' || c == '?') {
+					if (i > literalStart)
+						regex.append(Pattern.quote(source.substring(literalStart, i)));
+					regex.append(c == '*' ? ".*" : ".");
+					literalStart = i + 1;
+				}
+			}
+			if (literalStart < source.length())
+				regex.append(Pattern.quote(source.substring(literalStart)));
+			this.pattern = Pattern.compile(regex.toString(), Pattern.DOTALL);
+		}
+	}
+}
@@ -3,20 +3,24 @@ package es.mesacarlos.webconsole.config;
 import java.net.InetSocketAddress;
 import java.util.*;
 import java.util.HashMap;
+import java.util.concurrent.Executor;
 
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 
 import es.mesacarlos.webconsole.WebConsole;
+import es.mesacarlos.webconsole.auth.PasswordHash;
+import es.mesacarlos.webconsole.util.Internationalization;
 
 public class ConfigManager {
 	private static ConfigManager instance;
 	private WebConsole plugin = (WebConsole) Bukkit.getPluginManager().getPlugin("WebConsole");
-	private FileConfiguration config = plugin.getConfig();
+	private volatile FileConfiguration config = plugin.getConfig();
+	private volatile UserRegistry userRegistry;
 	
 	private ConfigManager() {
-		loadConfig();
+		loadConfig(null);
 	}
 	
 	public static ConfigManager getInstance() {
@@ -27,8 +31,9 @@ public class ConfigManager {
 	
 	/**
 	 * Create configuration file or load it if already exist
+	 * @param hasher Runs the hashing of plain text passwords, or null to hash them right away
 	 */
-	private void loadConfig() {
+	private void loadConfig(Executor hasher) {
 		// SSL variables
 		config.addDefault("useSSL", false);
 		config.addDefault("StoreType", "JKS");
@@ -48,6 +53,102 @@ public class ConfigManager {
 		fileManagerDefaults.put("maxDownloadSizeMB", 50);
 		config.addDefault("fileManager", fileManagerDefaults);
 		
+		// Console broadcast config
+		HashMap<String, Object> consoleDefaults = new HashMap<>();
+		consoleDefaults.put("queueCapacity", 8192);
+		consoleDefaults.put("overflowPolicy", "DROP_OLDEST");
+		consoleDefaults.put("blockTimeoutMillis", 5);
+		consoleDefaults.put("batchWindowMillis", 25);
+		consoleDefaults.put("batchMaxBytes", 65536);
+		consoleDefaults.put("scrollbackLines", 10000);
+		consoleDefaults.put("scrollbackBytes", 4194304);
+		consoleDefaults.put("resumeMaxBytes", 262144);
+		consoleDefaults.put("duplicateWindowMillis", 5000);
+		consoleDefaults.put("duplicateHistory", 32);
+		consoleDefaults.put("rateLimitPerSecond", 200);
+		consoleDefaults.put("rateLimitBurst", 1000);
+		config.addDefault("console", consoleDefaults);
+		
+		// Outbound backpressure config
+		HashMap<String, Object> backpressureDefaults = new HashMap<>();
+		backpressureDefaults.put("maxBufferedBytes", 1048576);
+		backpressureDefaults.put("maxBufferedFrames", 1024);
+		backpressureDefaults.put("globalMaxBufferedBytes", 33554432);
+		backpressureDefaults.put("slowConsumerPolicy", "COALESCE");
+		backpressureDefaults.put("closeCode", 4008);
+		config.addDefault("backpressure", backpressureDefaults);
+		
+		// permessage-deflate compression config
+		HashMap<String, Object> compressionDefaults = new HashMap<>();
+		compressionDefaults.put("enabled", false);
+		compressionDefaults.put("minSize", 256);
+		compressionDefaults.put("level", 6);
+		compressionDefaults.put("contextTakeover", false);
+		config.addDefault("compression", compressionDefaults);
+		
+		// Inbound requests config
+		HashMap<String, Object> requestsDefaults = new HashMap<>();
+		requestsDefaults.put("maxSize", 8388608);
+		requestsDefaults.put("maxInFlight", 8);
+		requestsDefaults.put("workerThreads", 4);
+		requestsDefaults.put("virtualThreads", true);
+		requestsDefaults.put("queueSize", 256);
+		requestsDefaults.put("maxBatchCommands", 100);
+		HashMap<String, Object> concurrencyDefaults = new HashMap<>();
+		concurrencyDefaults.put("DEFAULT", 16);
+		concurrencyDefaults.put("EXEC", 2);
+		concurrencyDefaults.put("EXEC_BATCH", 1);
+		concurrencyDefaults.put("READLOGFILE", 1);
+		concurrencyDefaults.put("FILE_DOWNLOAD", 1);
+		concurrencyDefaults.put("FILE_READ", 2);
+		concurrencyDefaults.put("FILE_WRITE", 2);
+		requestsDefaults.put("concurrency", concurrencyDefaults);
+		HashMap<String, Object> rateLimitDefaults = new HashMap<>();
+		rateLimitDefaults.put("DEFAULT", 50);
+		rateLimitDefaults.put("EXEC", 10);
+		rateLimitDefaults.put("EXEC_BATCH", 2);
+		rateLimitDefaults.put("READLOGFILE", 1);
+		rateLimitDefaults.put("FILE_READ", 5);
+		rateLimitDefaults.put("FILE_WRITE", 5);
+		rateLimitDefaults.put("FILE_DOWNLOAD", 2);
+		rateLimitDefaults.put("CPUUSAGE", 20);
+		rateLimitDefaults.put("RAMUSAGE", 20);
+		rateLimitDefaults.put("TPS", 20);
+		rateLimitDefaults.put("PLAYERS", 20);
+		rateLimitDefaults.put("STATS", 20);
+		requestsDefaults.put("rateLimits", rateLimitDefaults);
+		config.addDefault("requests", requestsDefaults);
+		
+		// Connection admission config
+		HashMap<String, Object> connectionsDefaults = new HashMap<>();
+		connectionsDefaults.put("maxTotal", 100);
+		connectionsDefaults.put("maxPerAddress", 8);
+		config.addDefault("connections", connectionsDefaults);
+		
+		// Metrics subscriptions config
+		HashMap<String, Object> metricsDefaults = new HashMap<>();
+		metricsDefaults.put("minIntervalMillis", 1000);
+		metricsDefaults.put("maxIntervalMillis", 60000);
+		config.addDefault("metrics", metricsDefaults);
+		
+		// Main thread work config
+		HashMap<String, Object> mainThreadDefaults = new HashMap<>();
+		mainThreadDefaults.put("budgetMicros", 1500);
+		config.addDefault("mainThread", mainThreadDefaults);
+		
+		// Login config
+		HashMap<String, Object> loginDefaults = new HashMap<>();
+		loginDefaults.put("hashPasswords", false);
+		loginDefaults.put("hashIterations", 210000);
+		loginDefaults.put("verifierThreads", 2);
+		loginDefaults.put("attemptsPerMinute", 10);
+		loginDefaults.put("attemptsBurst", 5);
+		loginDefaults.put("failuresBeforeLockout", 5);
+		loginDefaults.put("lockoutSeconds", 30);
+		loginDefaults.put("maxLockoutSeconds", 3600);
+		loginDefaults.put("resumeTokenMinutes", 720);
+		config.addDefault("login", loginDefaults);
+		
 		//Create passwords section if it does not exist
 		ConfigurationSection passwordsSection = config.getConfigurationSection("passwords");
 		if(passwordsSection == null) {
@@ -89,7 +190,95 @@ public class ConfigManager {
 		}
 		
 		config.options().copyDefaults(true);
+		List<PlainTextPassword> plainTextPasswords = isHashPasswords()
+				? getPlainTextPasswords(adminPasswordSection, viewerPasswordSection) : new ArrayList<PlainTextPassword>();
+		if (hasher == null) {
+			hashPasswords(plainTextPasswords);
+			replacePasswords(plainTextPasswords);
+		}
 		plugin.saveConfig();
+		
+		List<UserData> users = getAdmins();
+		users.addAll(getViewers());
+		userRegistry = new UserRegistry(users);
+		
+		if (hasher != null && !plainTextPasswords.isEmpty()) {
+			// Meanwhile these users log in with their plain text password, as before
+			hasher.execute(() -> {
+				hashPasswords(plainTextPasswords);
+				Bukkit.getScheduler().runTask(plugin, () -> {
+					synchronized (this) {
+						if (replacePasswords(plainTextPasswords)) {
+							plugin.saveConfig();
+							List<UserData> hashedUsers = getAdmins();
+							hashedUsers.addAll(getViewers());
+							userRegistry = new UserRegistry(hashedUsers);
+						}
+					}
+				});
+			});
+		}
+	}
+	
+	/**
+	 * Collects the passwords of config.yml that are not yet salted PBKDF2 verifiers
+	 * @param adminPasswordSection passwords.admin section
+	 * @param viewerPasswordSection passwords.viewer section
+	 * @return plain text passwords, still to be hashed
+	 */
+	private List<PlainTextPassword> getPlainTextPasswords(ConfigurationSection adminPasswordSection, ConfigurationSection viewerPasswordSection) {
+		List<PlainTextPassword> passwords = new ArrayList<PlainTextPassword>();
+		for (String username : adminPasswordSection.getKeys(false)) {
+			String password = adminPasswordSection.getString(username + ".password");
+			if (password != null && !PasswordHash.isHashed(password))
+				passwords.add(new PlainTextPassword(username, "passwords.admin." + username + ".password", password));
+		}
+		for (String username : viewerPasswordSection.getKeys(false)) {
+			Object password = viewerPasswordSection.get(username);
+			if (password != null && !(password instanceof ConfigurationSection) && !PasswordHash.isHashed(password.toString()))
+				passwords.add(new PlainTextPassword(username, "passwords.viewer." + username, password.toString()));
+		}
+		return passwords;
+	}
+	
+	/**
+	 * Computes the salted PBKDF2 verifiers. Slow on purpose, so it runs on the login pool when config.yml is reloaded.
+	 * @param passwords Plain text passwords
+	 */
+	private void hashPasswords(List<PlainTextPassword> passwords) {
+		int iterations = getPasswordHashIterations();
+		for (PlainTextPassword password : passwords)
+			password.hash = PasswordHash.hash(password.password, iterations);
+	}
+	
+	/**
+	 * Replaces the plain text passwords of config.yml with their hashes, logging which users are rewritten.
+	 * Passwords changed by a reload since they were read are left for the next load.
+	 * @param passwords Hashed passwords
+	 * @return true if config.yml was changed
+	 */
+	private boolean replacePasswords(List<PlainTextPassword> passwords) {
+		List<String> hashed = new ArrayList<String>();
+		for (PlainTextPassword password : passwords) {
+			if (password.password.equals(config.getString(password.path))) {
+				config.set(password.path, password.hash);
+				hashed.add(password.username);
+			}
+		}
+		if (!hashed.isEmpty())
+			Bukkit.getLogger().warning(Internationalization.getPhrase("passwords-hashed-console", hashed));
+		return !hashed.isEmpty();
+	}
+	
+	/**
+	 * Reads config.yml again and replaces the user registry. Sessions already logged in are kept.
+	 * Settings read only at startup, like the port, still need a restart.
+	 * @param hasher Runs the hashing of plain text passwords, which would stall the server tick, usually the login pool
+	 */
+	public synchronized void reload(Executor hasher) {
+		plugin.reloadConfig();
+		config = plugin.getConfig();
+		loadConfig(hasher);
 	}
 	
 	public boolean isSslEnabled() {
@@ -133,18 +322,18 @@ public class ConfigManager {
 	 * @return list of admin users
 	 */
 	private List<UserData> getAdmins() {
-		Set<String> adminConfig = plugin.getConfig().getConfigurationSection("passwords").getConfigurationSection("admin").getKeys(false);
+		Set<String> adminConfig = config.getConfigurationSection("passwords").getConfigurationSection("admin").getKeys(false);
 
 		List<UserData> adminUsers = new ArrayList<>();
 		
 		for(String username : adminConfig) {
 			adminUsers.add(new UserData(
 					username,
-					plugin.getConfig().getString("passwords.admin." + username + ".password"),
+					config.getString("passwords.admin." + username + ".password"),
 					UserType.ADMIN,
-					plugin.getConfig().getBoolean("passwords.admin." + username + ".commandWhitelist.enabled"),
-					plugin.getConfig().getBoolean("passwords.admin." + username + ".commandWhitelist.commandWhitelistActsAsBlacklist"),
-					plugin.getConfig().getStringList("passwords.admin." + username + ".commandWhitelist.whitelist")));
+					config.getBoolean("passwords.admin." + username + ".commandWhitelist.enabled"),
+					config.getBoolean("passwords.admin." + username + ".commandWhitelist.commandWhitelistActsAsBlacklist"),
+					config.getStringList("passwords.admin." + username + ".commandWhitelist.whitelist")));
 		}
 		
 		return adminUsers;
@@ -155,7 +344,7 @@ public class ConfigManager {
 	 * @return list of viewer users
 	 */
 	private List<UserData> getViewers() {
-		Map<String, Object> passwords = plugin.getConfig().getConfigurationSection("passwords").getConfigurationSection("viewer").getValues(false);
+		Map<String, Object> passwords = config.getConfigurationSection("passwords").getConfigurationSection("viewer").getValues(false);
 		List<UserData> viewerUsers = new ArrayList<>();
 		
 		for(Map.Entry<String, Object> entry : passwords.entrySet())
@@ -169,9 +358,15 @@ public class ConfigManager {
 	 * @return All Admin and Viewer users inside config.yml
 	 */
 	public List<UserData> getAllUsers(){
-		List<UserData> users = getAdmins();
-		users.addAll(getViewers());
-		return users;
+		return userRegistry.getAllUsers();
+	}
+	
+	/**
+	 * Get the users inside config.yml, indexed for logins and command checks
+	 * @return current user registry
+	 */
+	public UserRegistry getUserRegistry() {
+		return userRegistry;
 	}
 	
 	/**
@@ -182,6 +377,360 @@ public class ConfigManager {
 		return config.getLong("fileManager.maxDownloadSizeMB", 50);
 	}
 	
+	/**
+	 * Get the maximum amount of console lines waiting to be sent to clients
+	 * @return broadcast queue capacity
+	 */
+	public int getConsoleQueueCapacity() {
+		return config.getInt("console.queueCapacity", 8192);
+	}
+	
+	/**
+	 * Get what to do with new console lines when the broadcast queue is full
+	 * @return DROP_OLDEST or BLOCK
+	 */
+	public String getConsoleOverflowPolicy() {
+		return config.getString("console.overflowPolicy", "DROP_OLDEST");
+	}
+	
+	/**
+	 * Get the maximum time a logging thread waits for room in the broadcast queue, when using the BLOCK policy
+	 * @return timeout in milliseconds
+	 */
+	public long getConsoleBlockTimeoutMillis() {
+		return config.getLong("console.blockTimeoutMillis", 5);
+	}
+	
+	/**
+	 * Get the maximum time a console line waits before being sent to clients using batched mode
+	 * @return flush window in milliseconds
+	 */
+	public long getConsoleBatchWindowMillis() {
+		return config.getLong("console.batchWindowMillis", 25);
+	}
+	
+	/**
+	 * Get the approximate size at which a console batch is sent before its flush window ends
+	 * @return batch size in bytes
+	 */
+	public int getConsoleBatchMaxBytes() {
+		return config.getInt("console.batchMaxBytes", 65536);
+	}
+	
+	/**
+	 * Get the maximum amount of console lines kept for reconnecting clients
+	 * @return scrollback size in lines
+	 */
+	public int getScrollbackLines() {
+		return config.getInt("console.scrollbackLines", 10000);
+	}
+	
+	/**
+	 * Get the maximum size of the console lines kept for reconnecting clients
+	 * @return scrollback size in bytes
+	 */
+	public int getScrollbackBytes() {
+		return config.getInt("console.scrollbackBytes", 4194304);
+	}
+	
+	/**
+	 * Get the maximum size of the missed console lines sent in a single response to a reconnecting client
+	 * @return size in bytes
+	 */
+	public int getResumeMaxBytes() {
+		return Math.max(1024, config.getInt("console.resumeMaxBytes", 262144));
+	}
+	
+	/**
+	 * Get the time during which a repeated console line is collapsed into a "repeated N times" line
+	 * @return milliseconds, 0 if duplicate collapsing is disabled
+	 */
+	public long getDuplicateWindowMillis() {
+		return config.getLong("console.duplicateWindowMillis", 5000);
+	}
+	
+	/**
+	 * Get the amount of recent distinct console lines new lines are compared against when collapsing duplicates
+	 * @return lines
+	 */
+	public int getDuplicateHistory() {
+		return config.getInt("console.duplicateHistory", 32);
+	}
+	
+	/**
+	 * Get the console lines per second each logger can send to the clients
+	 * @return lines per second, 0 if rate limiting is disabled
+	 */
+	public int getRateLimitPerSecond() {
+		return config.getInt("console.rateLimitPerSecond", 200);
+	}
+	
+	/**
+	 * Get the console lines a logger can send at once before being rate limited
+	 * @return lines
+	 */
+	public int getRateLimitBurst() {
+		return config.getInt("console.rateLimitBurst", 1000);
+	}
+	
+	/**
+	 * Get the maximum amount of bytes a single client may have waiting to be written
+	 * @return per connection byte budget
+	 */
+	public long getMaxBufferedBytes() {
+		return config.getLong("backpressure.maxBufferedBytes", 1048576);
+	}
+	
+	/**
+	 * Get the maximum amount of frames a single client may have waiting to be written
+	 * @return per connection frame budget
+	 */
+	public int getMaxBufferedFrames() {
+		return config.getInt("backpressure.maxBufferedFrames", 1024);
+	}
+	
+	/**
+	 * Get the maximum amount of bytes waiting to be written across all clients
+	 * @return global byte budget
+	 */
+	public long getGlobalMaxBufferedBytes() {
+		return config.getLong("backpressure.globalMaxBufferedBytes", 33554432);
+	}
+	
+	/**
+	 * Get what to do with clients over their outbound budget
+	 * @return COALESCE, DROP or DISCONNECT
+	 */
+	public String getSlowConsumerPolicy() {
+		return config.getString("backpressure.slowConsumerPolicy", "COALESCE");
+	}
+	
+	/**
+	 * Get the WebSocket close code sent to clients disconnected by the DISCONNECT policy
+	 * @return close code
+	 */
+	public int getSlowConsumerCloseCode() {
+		return config.getInt("backpressure.closeCode", 4008);
+	}
+	
+	/**
+	 * Check if permessage-deflate compression is offered to clients. Disabled unless enabled in config.yml
+	 * @return true if enabled
+	 */
+	public boolean isCompressionEnabled() {
+		return config.getBoolean("compression.enabled", false);
+	}
+	
+	/**
+	 * Get the minimum message size to compress. Smaller messages are sent as they are.
+	 * @return size in bytes
+	 */
+	public int getCompressionMinSize() {
+		return config.getInt("compression.minSize", 256);
+	}
+	
+	/**
+	 * Get the deflate compression level, from 0 (none) to 9 (best)
+	 * @return compression level
+	 */
+	public int getCompressionLevel() {
+		return config.getInt("compression.level", 6);
+	}
+	
+	/**
+	 * Check if the compression dictionary is kept between messages. Better ratio for console output, but more memory per client.
+	 * @return true if context takeover is enabled
+	 */
+	public boolean isCompressionContextTakeover() {
+		return config.getBoolean("compression.contextTakeover", false);
+	}
+	
+	/**
+	 * Get the maximum size of a message sent by a client. Bigger messages close the connection.
+	 * @return size in bytes
+	 */
+	public int getMaxRequestSize() {
+		return config.getInt("requests.maxSize", 8388608);
+	}
+	
+	/**
+	 * Get the maximum amount of commands a single connection may have running at the same time
+	 * @return in-flight limit per connection
+	 */
+	public int getMaxInFlightRequests() {
+		return Math.max(1, config.getInt("requests.maxInFlight", 8));
+	}
+	
+	/**
+	 * Get the amount of threads running client commands
+	 * @return worker threads
+	 */
+	public int getRequestWorkerThreads() {
+		return Math.max(1, config.getInt("requests.workerThreads", 4));
+	}
+	
+	/**
+	 * Check if commands should run in virtual threads when the server runs on Java 21 or newer
+	 * @return true to use virtual threads if available
+	 */
+	public boolean isRequestVirtualThreads() {
+		return config.getBoolean("requests.virtualThreads", true);
+	}
+	
+	/**
+	 * Get the maximum amount of commands waiting for a free slot, across all connections
+	 * @return queue size
+	 */
+	public int getRequestQueueSize() {
+		return Math.max(0, config.getInt("requests.queueSize", 256));
+	}
+	
+	/**
+	 * Get the maximum amount of commands in a single EXEC_BATCH request
+	 * @return commands per batch
+	 */
+	public int getMaxBatchCommands() {
+		return Math.max(1, config.getInt("requests.maxBatchCommands", 100));
+	}
+	
+	/**
+	 * Get the maximum amount of commands of each type running at the same time. DEFAULT applies to unlisted commands.
+	 * @return limit by command name
+	 */
+	public Map<String, Integer> getCommandConcurrencyLimits() {
+		Map<String, Integer> limits = new HashMap<String, Integer>();
+		ConfigurationSection section = config.getConfigurationSection("requests.concurrency");
+		if (section != null)
+			for (String command : section.getKeys(false))
+				limits.put(command.toUpperCase(), Math.max(1, section.getInt(command)));
+		return limits;
+	}
+	
+	/**
+	 * Get how many commands of each type a connection may send per second. The DEFAULT key applies to unlisted commands.
+	 * @return rate limits by command name, 0 for no limit
+	 */
+	public Map<String, Integer> getCommandRateLimits() {
+		Map<String, Integer> limits = new HashMap<String, Integer>();
+		ConfigurationSection section = config.getConfigurationSection("requests.rateLimits");
+		if (section != null)
+			for (String command : section.getKeys(false))
+				limits.put(command.toUpperCase(), Math.max(0, section.getInt(command)));
+		return limits;
+	}
+	
+	/**
+	 * Get the maximum open connections
+	 * @return maximum connections, 0 for no limit
+	 */
+	public int getMaxConnections() {
+		return Math.max(0, config.getInt("connections.maxTotal", 100));
+	}
+	
+	/**
+	 * Get the maximum open connections from a single IP address
+	 * @return maximum connections per address, 0 for no limit
+	 */
+	public int getMaxConnectionsPerAddress() {
+		return Math.max(0, config.getInt("connections.maxPerAddress", 8));
+	}
+	
+	/**
+	 * Get the shortest interval a client can receive metrics at with SUBSCRIBE_METRICS. Longer intervals are rounded to a multiple of it
+	 * @return interval in milliseconds
+	 */
+	public long getMetricsMinIntervalMillis() {
+		return Math.max(100, config.getInt("metrics.minIntervalMillis", 1000));
+	}
+	
+	/**
+	 * Get the longest interval a client can receive metrics at with SUBSCRIBE_METRICS
+	 * @return interval in milliseconds
+	 */
+	public long getMetricsMaxIntervalMillis() {
+		return Math.max(getMetricsMinIntervalMillis(), config.getInt("metrics.maxIntervalMillis", 60000));
+	}
+	
+	/**
+	 * Get the maximum time spent per tick on main thread work requested by WebConsole clients
+	 * @return budget in microseconds
+	 */
+	public int getMainThreadBudgetMicros() {
+		return Math.max(100, config.getInt("mainThread.budgetMicros", 1500));
+	}
+	
+	/**
+	 * Check if plain text passwords in config.yml are replaced with salted hashes when loading it
+	 * @return true if passwords are hashed
+	 */
+	public boolean isHashPasswords() {
+		return config.getBoolean("login.hashPasswords", false);
+	}
+	
+	/**
+	 * Get the PBKDF2 iterations used when hashing a password
+	 * @return iterations
+	 */
+	public int getPasswordHashIterations() {
+		return Math.max(10000, config.getInt("login.hashIterations", 210000));
+	}
+	
+	/**
+	 * Get the amount of threads checking passwords, away from the WebSocket threads
+	 * @return verifier threads
+	 */
+	public int getLoginVerifierThreads() {
+		return Math.max(1, config.getInt("login.verifierThreads", 2));
+	}
+	
+	/**
+	 * Get the sustained login attempts allowed from a single IP address
+	 * @return attempts per minute
+	 */
+	public int getLoginAttemptsPerMinute() {
+		return config.getInt("login.attemptsPerMinute", 10);
+	}
+	
+	/**
+	 * Get the login attempts a single IP address can make at once
+	 * @return burst size
+	 */
+	public int getLoginAttemptsBurst() {
+		return config.getInt("login.attemptsBurst", 5);
+	}
+	
+	/**
+	 * Get the failed logins in a row after which an IP address is locked out
+	 * @return failures
+	 */
+	public int getLoginFailuresBeforeLockout() {
+		return config.getInt("login.failuresBeforeLockout", 5);
+	}
+	
+	/**
+	 * Get the first lockout time, doubled by every further failed login
+	 * @return lockout in seconds
+	 */
+	public int getLoginLockoutSeconds() {
+		return config.getInt("login.lockoutSeconds", 30);
+	}
+	
+	/**
+	 * Get the maximum time an IP address stays locked out
+	 * @return lockout in seconds
+	 */
+	public int getLoginMaxLockoutSeconds() {
+		return config.getInt("login.maxLockoutSeconds", 3600);
+	}
+	
+	/**
+	 * Get the time a session can be resumed with its resume token after it was issued
+	 * @return lifetime in minutes, 0 if resume tokens are disabled
+	 */
+	public int getResumeTokenMinutes() {
+		return Math.max(0, config.getInt("login.resumeTokenMinutes", 720));
+	}
+	
 	/**
 	 * Get the HTTP server port
 	 * @return port number
@@ -190,4 +739,20 @@ public class ConfigManager {
 		return config.getInt("port", 8080);
 	}
 	
+	/**
+	 * A password of config.yml waiting to be replaced by its hash
+	 */
+	private static final class PlainTextPassword {
+		private final String username;
+		private final String path;
+		private final String password;
+		private String hash;
+		
+		PlainTextPassword(String username, String path, String password) {
+			this.username = username;
+			this.path = path;
+			this.password = password;
+		}
+	}
+	
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package es.mesacarlos.webconsole.config;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class UserData {
@@ -9,6 +11,7 @@ public class UserData {
 	private boolean isWhitelistEnabled;
 	private boolean isWhitelistActsAsBlacklist;
 	private List<String> whitelistedCommands;
+	private CommandWhitelist whitelist;
 	
 	public UserData(String username, String password, UserType userType,
 					boolean isWhitelistEnabled, boolean isWhitelistActsAsBlacklist, List<String> whitelistedCommands) {
@@ -17,7 +20,8 @@ public class UserData {
 		this.userType = userType;
 		this.isWhitelistEnabled = isWhitelistEnabled;
 		this.isWhitelistActsAsBlacklist = isWhitelistActsAsBlacklist;
-		this.whitelistedCommands = whitelistedCommands;
+		this.whitelistedCommands = Collections.unmodifiableList(new ArrayList<String>(whitelistedCommands));
+		this.whitelist = new CommandWhitelist(isWhitelistEnabled, isWhitelistActsAsBlacklist, this.whitelistedCommands);
 	}
 
 	public String getUsername() {
@@ -43,4 +47,12 @@ public class UserData {
 	public List<String> getWhitelistedCommands() {
 		return whitelistedCommands;
 	}
+
+	/**
+	 * Command whitelist, ready to check commands against it
+	 * @return compiled whitelist
+	 */
+	public CommandWhitelist getWhitelist() {
+		return whitelist;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package es.mesacarlos.webconsole.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import es.mesacarlos.webconsole.auth.PasswordHash;
+
+/**
+ * Immutable snapshot of the users in config.yml, indexed by username.
+ * It is built when the configuration is loaded and replaced as a whole when it is reloaded,
+ * so logins and command checks never read the configuration file sections.
+ */
+public final class UserRegistry {
+	private final List<UserData> users;
+	private final Map<String, UserData> usersByName;
+
+	/**
+	 * @param users All users, admins first. When two users share a username, the first one wins.
+	 */
+	public UserRegistry(List<UserData> users) {
+		Map<String, UserData> byName = new HashMap<String, UserData>();
+		for (UserData user : users)
+			byName.putIfAbsent(user.getUsername(), user);
+		this.users = Collections.unmodifiableList(new ArrayList<UserData>(users));
+		this.usersByName = byName;
+	}
+
+	/**
+	 * Get an user by its name
+	 * @param username Username
+	 * @return User, null if there is no user with that name
+	 */
+	public UserData getUser(String username) {
+		return username == null ? null : usersByName.get(username);
+	}
+
+	/**
+	 * Get the user a password belongs to. Checking a hashed password is slow on purpose: call it away from the WebSocket threads.
+	 * Logins without a username, as older clients send them, only match users with a plain text password, so an attempt
+	 * never costs more than one hash check.
+	 * @param username User to check, or null to check the users with a plain text password
+	 * @param password Password sent at login
+	 * @return User, null if the password is wrong
+	 */
+	public UserData authenticate(String username, String password) {
+		if (password == null)
+			return null;
+		if (username != null) {
+			UserData user = getUser(username);
+			return user != null && PasswordHash.verify(password, user.getPassword()) ? user : null;
+		}
+		for (UserData user : users)
+			if (!PasswordHash.isHashed(user.getPassword()) && PasswordHash.verify(password, user.getPassword()))
+				return user;
+		return null;
+	}
+
+	/**
+	 * Get all registered users
+	 * @return unmodifiable list of users
+	 */
+	public List<UserData> getAllUsers() {
+		return users;
+	}
+}
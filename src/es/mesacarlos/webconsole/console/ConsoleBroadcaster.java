@@ -0,0 +1,336 @@
+package es.mesacarlos.webconsole.console;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+import org.bukkit.Bukkit;
+
+import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.util.MpscRingBuffer;
+import es.mesacarlos.webconsole.websocket.WSServer;
+
+/**
+ * Moves console lines from the logging threads to the WebSocket clients.
+ * LogFilter only enqueues the line, and a dedicated thread performs the fan-out to all connections,
+ * so a burst of log output never makes the main server thread wait on WebSocket sends.
+ * Clients that negotiated batched mode receive the lines coalesced into a single frame per flush window.
+ * Log storms are collapsed and rate limited by a LogStormGuard before the fan-out.
+ */
+public class ConsoleBroadcaster implements Runnable {
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	private static final long SUMMARY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+	private static final long ERROR_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	private final WSServer wsServer;
+	private final MpscRingBuffer<ConsoleLine> queue;
+	private final ConsoleScrollback scrollback;
+	private final LogStormGuard stormGuard;
+	private final OverflowPolicy overflowPolicy;
+	private final long blockTimeoutNanos;
+	private final long batchWindowNanos;
+	private final int batchMaxBytes;
+
+	private long lastSequence;
+	private List<ConsoleLine> batch = new ArrayList<ConsoleLine>();
+	private int batchBytes;
+	private long batchDeadline;
+	private final List<ConsoleLine> summaries = new ArrayList<ConsoleLine>();
+	private long lastSummaryCheck = System.nanoTime();
+	private long lastErrorLog;
+	private boolean errorLogged;
+
+	private final AtomicLong enqueued = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile long lastLagNanos;
+	private volatile long maxLagNanos;
+
+	private volatile Thread thread;
+	private volatile boolean running;
+	private volatile boolean parked;
+
+	/**
+	 * @param wsServer Server used to deliver the lines
+	 * @param capacity Maximum amount of lines waiting to be sent
+	 * @param overflowPolicy What to do when the queue is full
+	 * @param blockTimeoutMillis Maximum time a logging thread waits when the policy is BLOCK
+	 * @param batchWindowMillis Maximum time a line waits before its batch is flushed
+	 * @param batchMaxBytes Approximate batch size that triggers an early flush
+	 * @param scrollback Storage of the most recent lines, used to resume clients
+	 * @param stormGuard Duplicate collapsing and per-logger rate limiting
+	 */
+	public ConsoleBroadcaster(WSServer wsServer, int capacity, OverflowPolicy overflowPolicy, long blockTimeoutMillis,
+			long batchWindowMillis, int batchMaxBytes, ConsoleScrollback scrollback, LogStormGuard stormGuard) {
+		this.wsServer = wsServer;
+		this.queue = new MpscRingBuffer<ConsoleLine>(capacity);
+		this.scrollback = scrollback;
+		this.stormGuard = stormGuard;
+		this.overflowPolicy = overflowPolicy;
+		this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+		this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(batchWindowMillis);
+		this.batchMaxBytes = batchMaxBytes;
+	}
+
+	/**
+	 * Starts the broadcaster thread
+	 */
+	public void start() {
+		running = true;
+		Thread t = new Thread(this, "WebConsole-Broadcaster");
+		t.setDaemon(true);
+		thread = t;
+		t.start();
+	}
+
+	/**
+	 * Stops the broadcaster thread. Lines still in the queue are discarded.
+	 */
+	public void stop() {
+		running = false;
+		Thread t = thread;
+		if (t != null) {
+			LockSupport.unpark(t);
+			try {
+				t.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		thread = null;
+	}
+
+	/**
+	 * Queues a console line to be sent to all logged-in clients. Called from any logging thread.
+	 * @param line Console line
+	 */
+	public void offer(ConsoleLine line) {
+		if (!queue.offer(line)) {
+			if (overflowPolicy == OverflowPolicy.BLOCK)
+				offerBlocking(line);
+			else
+				offerDroppingOldest(line);
+		} else {
+			enqueued.incrementAndGet();
+		}
+
+		if (parked) {
+			Thread t = thread;
+			if (t != null)
+				LockSupport.unpark(t);
+		}
+	}
+
+	private void offerDroppingOldest(ConsoleLine line) {
+		while (!queue.offer(line)) {
+			if (queue.poll() != null)
+				dropped.incrementAndGet();
+		}
+		enqueued.incrementAndGet();
+	}
+
+	private void offerBlocking(ConsoleLine line) {
+		long deadline = System.nanoTime() + blockTimeoutNanos;
+		while (!queue.offer(line)) {
+			if (!running || System.nanoTime() - deadline >= 0) {
+				dropped.incrementAndGet(); // Timed out, the new line is lost
+				return;
+			}
+			Thread t = thread;
+			if (t != null)
+				LockSupport.unpark(t);
+			LockSupport.parkNanos(BLOCK_PARK_NANOS);
+		}
+		enqueued.incrementAndGet();
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			ConsoleLine line = queue.poll();
+			if (line == null) {
+				long parkNanos = IDLE_PARK_NANOS;
+				if (!batch.isEmpty()) {
+					parkNanos = batchDeadline - System.nanoTime();
+					if (parkNanos <= 0) {
+						flushBatch();
+						continue;
+					}
+				}
+				parked = true;
+				if (queue.isEmpty() && running)
+					LockSupport.parkNanos(this, parkNanos);
+				parked = false;
+				publishSummaries(System.nanoTime());
+				flushPendingLines();
+				continue;
+			}
+
+			long now = System.nanoTime();
+			long lag = now - line.getEnqueuedAt();
+			lastLagNanos = lag;
+			if (lag > maxLagNanos)
+				maxLagNanos = lag;
+
+			boolean admitted = stormGuard.admit(line, now, summaries);
+			for (ConsoleLine summary : summaries)
+				publish(summary);
+			summaries.clear();
+			if (admitted)
+				publish(line);
+			publishSummaries(now);
+		}
+	}
+
+	/**
+	 * Sends the lines reporting suppressed output, at most once per second
+	 * @param now Current System.nanoTime()
+	 */
+	private void publishSummaries(long now) {
+		if (now - lastSummaryCheck < SUMMARY_INTERVAL_NANOS)
+			return;
+		lastSummaryCheck = now;
+		stormGuard.drainSummaries(now, summaries);
+		for (ConsoleLine summary : summaries)
+			publish(summary);
+		summaries.clear();
+	}
+
+	/**
+	 * Numbers a line, stores it in the scrollback and sends it to the clients
+	 * @param line Console line
+	 */
+	private void publish(ConsoleLine line) {
+		line.setSequence(++lastSequence);
+		scrollback.append(line);
+
+		try {
+			if (wsServer != null)
+				wsServer.onNewConsoleLinePrinted(line);
+		} catch (Exception e) {
+			logError(e);
+		}
+
+		addToBatch(line);
+	}
+
+	/**
+	 * Adds a line to the current batch, flushing it if the size limit or the flush window is reached
+	 * @param line Console line already sent to non batched clients
+	 */
+	private void addToBatch(ConsoleLine line) {
+		long now = System.nanoTime();
+		if (batch.isEmpty())
+			batchDeadline = now + batchWindowNanos;
+		batch.add(line);
+		batchBytes += line.getMessage().length() + 32; // Line plus its JSON envelope
+
+		if (batchBytes >= batchMaxBytes || now - batchDeadline >= 0)
+			flushBatch();
+	}
+
+	/**
+	 * Gives slow clients that caught up the lines held for them while they were over budget
+	 */
+	private void flushPendingLines() {
+		try {
+			if (wsServer != null)
+				wsServer.flushPendingConsoleLines();
+		} catch (Exception e) {
+			logError(e);
+		}
+	}
+
+	/**
+	 * Sends all pending lines as a single frame to the clients using batched mode
+	 */
+	private void flushBatch() {
+		List<ConsoleLine> lines = batch;
+		batch = new ArrayList<ConsoleLine>();
+		batchBytes = 0;
+
+		try {
+			if (wsServer != null)
+				wsServer.onConsoleBatch(lines);
+		} catch (Exception e) {
+			logError(e);
+		}
+	}
+
+	/**
+	 * Logs an error sending lines. Logged lines come back through this broadcaster, so an error repeating on every line
+	 * is only logged every few seconds.
+	 * @param e Error
+	 */
+	private void logError(Exception e) {
+		long now = System.nanoTime();
+		if (errorLogged && now - lastErrorLog < ERROR_LOG_INTERVAL_NANOS)
+			return;
+		errorLogged = true;
+		lastErrorLog = now;
+		Bukkit.getLogger().log(Level.SEVERE, Internationalization.getPhrase("console-broadcast-error"), e);
+	}
+
+	/**
+	 * Total lines accepted into the queue
+	 * @return enqueued lines
+	 */
+	public long getEnqueued() {
+		return enqueued.get();
+	}
+
+	/**
+	 * Total lines lost because the queue was full
+	 * @return dropped lines
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Lines currently waiting to be sent
+	 * @return queue depth
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Time the most recently sent line spent waiting in the queue
+	 * @return lag in milliseconds
+	 */
+	public double getLagMillis() {
+		return lastLagNanos / 1_000_000.0;
+	}
+
+	/**
+	 * Highest time a line spent waiting in the queue since the broadcaster started
+	 * @return lag in milliseconds
+	 */
+	public double getMaxLagMillis() {
+		return maxLagNanos / 1_000_000.0;
+	}
+
+	/**
+	 * Most recent console lines, indexed by sequence number
+	 * @return scrollback
+	 */
+	public ConsoleScrollback getScrollback() {
+		return scrollback;
+	}
+
+	/**
+	 * Duplicate collapsing and rate limiting applied to the lines
+	 * @return storm guard
+	 */
+	public LogStormGuard getStormGuard() {
+		return stormGuard;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+}
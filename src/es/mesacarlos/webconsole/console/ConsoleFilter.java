@@ -0,0 +1,301 @@
+package es.mesacarlos.webconsole.console;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.logging.log4j.Level;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+import es.mesacarlos.webconsole.websocket.response.BinaryOutput;
+
+/**
+ * Console lines a client subscribed to. Compiled once when the client subscribes, and evaluated by the broadcaster for every line.
+ * Two filters with the same settings are equal, so clients subscribing to the same lines can share a single instance
+ * and a single evaluation per line.
+ * <p>
+ * Any logged in user can send a filter, and they all run on the broadcaster thread, so regular expressions are limited:
+ * they cannot be longer than {@value #MAX_PATTERN_LENGTH} chars nor repeat a group holding a quantifier, like (a+)+,
+ * and a match giving up after reading each char of the line {@value #STEPS_PER_CHAR} times counts as no match.
+ */
+public class ConsoleFilter {
+	public static final int MAX_PATTERN_LENGTH = 256;
+	public static final int STEPS_PER_CHAR = 64;
+	private static final int MIN_STEPS = 16384;
+
+	private final Level minLevel;
+	private final List<String> loggerPrefixes;
+	private final Pattern include;
+	private final Pattern exclude;
+
+	/**
+	 * @param minLevel Least specific level to receive, null for all levels
+	 * @param loggerPrefixes Logger name prefixes to receive, empty for all loggers
+	 * @param include Regular expression lines must contain, null for all lines
+	 * @param exclude Regular expression lines must not contain, null for none
+	 * @throws PatternSyntaxException if any of the regular expressions is not valid
+	 * @throws IllegalArgumentException if any of the regular expressions is too long or may backtrack catastrophically
+	 */
+	public ConsoleFilter(Level minLevel, List<String> loggerPrefixes, String include, String exclude) {
+		this.minLevel = minLevel;
+		this.loggerPrefixes = Collections.unmodifiableList(new ArrayList<String>(loggerPrefixes));
+		this.include = compile(include);
+		this.exclude = compile(exclude);
+	}
+
+	private static Pattern compile(String regex) {
+		if (regex == null || regex.isEmpty())
+			return null;
+		if (regex.length() > MAX_PATTERN_LENGTH)
+			throw new IllegalArgumentException("Regular expressions cannot be longer than " + MAX_PATTERN_LENGTH + " chars");
+		if (hasNestedQuantifier(regex))
+			throw new IllegalArgumentException("Regular expressions cannot repeat a group holding a quantifier: " + regex);
+		return Pattern.compile(regex);
+	}
+
+	/**
+	 * Check if a regular expression repeats a group that already holds a quantifier, like (a+)+ or (\w*x)*,
+	 * the usual cause of catastrophic backtracking
+	 * @param regex Regular expression
+	 * @return true if it has nested quantifiers
+	 */
+	static boolean hasNestedQuantifier(String regex) {
+		Deque<Boolean> groups = new ArrayDeque<Boolean>();
+		boolean quantified = false; // The current group holds a quantifier
+		boolean inClass = false;
+		for (int i = 0; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (inClass) {
+				inClass = c != ']';
+			} else if (c == '[') {
+				inClass = true;
+			} else if (c == '(') {
+				groups.push(quantified);
+				quantified = false;
+			} else if (c == ')') {
+				boolean inner = quantified;
+				quantified = !groups.isEmpty() && groups.pop();
+				char next = i + 1 < regex.length() ? regex.charAt(i + 1) : 0;
+				boolean repeated = next == '*' || next == '+' || next == '{';
+				if (inner && repeated)
+					return true;
+				quantified |= inner || repeated;
+			} else if (c == '*' || c == '+' || c == '{') {
+				quantified = true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Builds a filter from the params of a CONSOLE_SUBSCRIBE command, for example
+	 * {"minLevel": "WARN", "loggers": ["net.minecraft"], "include": "joined", "exclude": "\\[DEBUG\\]"}
+	 * @param obj Filter definition. All properties are optional, and null is the same as missing.
+	 * @return compiled filter
+	 * @throws IllegalArgumentException if the definition is not valid
+	 */
+	public static ConsoleFilter fromJson(JsonObject obj) {
+		Level minLevel = null;
+		String levelName = getString(obj, "minLevel");
+		if (levelName != null) {
+			minLevel = Level.getLevel(levelName.toUpperCase());
+			if (minLevel == null)
+				throw new IllegalArgumentException("Unknown level " + levelName);
+		}
+
+		List<String> loggerPrefixes = new ArrayList<String>();
+		JsonElement loggers = obj.get("loggers");
+		if (loggers != null && loggers.isJsonArray()) {
+			for (JsonElement logger : loggers.getAsJsonArray())
+				loggerPrefixes.add(asString(logger, "loggers must be a string or an array of strings"));
+		} else if (loggers != null && !loggers.isJsonNull()) {
+			loggerPrefixes.add(asString(loggers, "loggers must be a string or an array of strings"));
+		}
+
+		String include = getString(obj, "include");
+		String exclude = getString(obj, "exclude");
+		try {
+			return new ConsoleFilter(minLevel, loggerPrefixes, include, exclude);
+		} catch (PatternSyntaxException e) {
+			throw new IllegalArgumentException("Invalid regular expression " + e.getPattern());
+		}
+	}
+
+	private static String getString(JsonObject obj, String property) {
+		JsonElement value = obj.get(property);
+		return value == null || value.isJsonNull() ? null : asString(value, property + " must be a string");
+	}
+
+	private static String asString(JsonElement value, String error) {
+		if (!value.isJsonPrimitive() || !value.getAsJsonPrimitive().isString())
+			throw new IllegalArgumentException(error);
+		return value.getAsString();
+	}
+
+	/**
+	 * Check if a line passes this filter. Cheap checks run first, regular expressions last.
+	 * @param line Console line
+	 * @return true if the client wants this line
+	 */
+	public boolean matches(ConsoleLine line) {
+		if (minLevel != null && line.getLevel() != null && !line.getLevel().isMoreSpecificThan(minLevel))
+			return false;
+		if (!loggerPrefixes.isEmpty()) {
+			String loggerName = line.getLoggerName() == null ? "" : line.getLoggerName();
+			boolean found = false;
+			for (String prefix : loggerPrefixes) {
+				if (loggerName.startsWith(prefix)) {
+					found = true;
+					break;
+				}
+			}
+			if (!found)
+				return false;
+		}
+		if (exclude != null && find(exclude, line.getMessage()))
+			return false;
+		return include == null || find(include, line.getMessage());
+	}
+
+	/**
+	 * Searches a pattern within the step budget of the line
+	 * @return true if found, false if not found or the budget ran out
+	 */
+	private static boolean find(Pattern pattern, String text) {
+		try {
+			return pattern.matcher(new BudgetedText(text)).find();
+		} catch (BudgetExceededException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Keeps the lines passing this filter
+	 * @param lines Console lines
+	 * @return matching lines, in the same order
+	 */
+	public List<ConsoleLine> filter(List<ConsoleLine> lines) {
+		List<ConsoleLine> result = new ArrayList<ConsoleLine>(lines.size());
+		for (ConsoleLine line : lines)
+			if (matches(line))
+				result.add(line);
+		return result;
+	}
+
+	/**
+	 * Writes this filter as a JSON object using the same properties accepted by {@link #fromJson(JsonObject)}
+	 * @param writer Writer receiving the object
+	 * @throws IOException if the underlying writer fails
+	 */
+	public void writeJson(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		if (minLevel != null)
+			writer.name("minLevel").value(minLevel.name());
+		writer.name("loggers").beginArray();
+		for (String prefix : loggerPrefixes)
+			writer.value(prefix);
+		writer.endArray();
+		if (include != null)
+			writer.name("include").value(include.pattern());
+		if (exclude != null)
+			writer.name("exclude").value(exclude.pattern());
+		writer.endObject();
+	}
+
+	/**
+	 * Binary counterpart of {@link #writeJson(JsonWriter)}
+	 * @param out Binary message being built
+	 */
+	public void writeBinary(BinaryOutput out) {
+		out.beginObject();
+		if (minLevel != null)
+			out.property("minLevel", minLevel.name());
+		out.field("loggers").beginArray(loggerPrefixes.size());
+		for (String prefix : loggerPrefixes)
+			out.value(prefix);
+		if (include != null)
+			out.property("include", include.pattern());
+		if (exclude != null)
+			out.property("exclude", exclude.pattern());
+		out.endObject();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ConsoleFilter))
+			return false;
+		ConsoleFilter other = (ConsoleFilter) obj;
+		return minLevel == other.minLevel
+				&& loggerPrefixes.equals(other.loggerPrefixes)
+				&& patternOf(include).equals(patternOf(other.include))
+				&& patternOf(exclude).equals(patternOf(other.exclude));
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = minLevel == null ? 0 : minLevel.hashCode();
+		hash = 31 * hash + loggerPrefixes.hashCode();
+		hash = 31 * hash + patternOf(include).hashCode();
+		return 31 * hash + patternOf(exclude).hashCode();
+	}
+
+	private static String patternOf(Pattern pattern) {
+		return pattern == null ? "" : pattern.pattern();
+	}
+
+	/**
+	 * Line text counting the chars the regular expression engine reads, which bounds the work of a single match
+	 */
+	private static final class BudgetedText implements CharSequence {
+		private final String text;
+		private int steps;
+
+		BudgetedText(String text) {
+			this.text = text;
+			this.steps = (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_STEPS, (long) text.length() * STEPS_PER_CHAR));
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (--steps < 0)
+				throw BudgetExceededException.INSTANCE;
+			return text.charAt(index);
+		}
+
+		@Override
+		public int length() {
+			return text.length();
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return text.subSequence(start, end);
+		}
+
+		@Override
+		public String toString() {
+			return text;
+		}
+	}
+
+	private static final class BudgetExceededException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		static final BudgetExceededException INSTANCE = new BudgetExceededException();
+
+		private BudgetExceededException() {
+			super(null, null, false, false); // Thrown often by a bad pattern, without a stack trace
+		}
+	}
+}
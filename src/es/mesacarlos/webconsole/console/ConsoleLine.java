@@ -0,0 +1,98 @@
+package es.mesacarlos.webconsole.console;
+
+import org.apache.logging.log4j.Level;
+
+/**
+ * A console line, with the metadata of the log event that printed it
+ */
+public class ConsoleLine {
+	private final String message;
+	private final Level level;
+	private final String loggerName;
+	private final String threadName;
+	private final boolean thrown;
+	private final long timestamp;
+	private final long enqueuedAt;
+	private long sequence;
+
+	/**
+	 * Builds a line printed by a log event
+	 * @param message Console line
+	 * @param level Level of the log event, can be null
+	 * @param loggerName Name of the logger that printed the line, can be null
+	 * @param threadName Name of the thread that printed the line, can be null
+	 * @param timestamp Moment the line was printed, in epoch milliseconds
+	 * @param thrown true if the log event carried an exception
+	 */
+	public ConsoleLine(String message, Level level, String loggerName, String threadName, long timestamp, boolean thrown) {
+		this.message = message;
+		this.level = level;
+		this.loggerName = loggerName;
+		this.threadName = threadName;
+		this.thrown = thrown;
+		this.timestamp = timestamp;
+		this.enqueuedAt = System.nanoTime();
+	}
+
+	/**
+	 * Builds a line generated by WebConsole itself, printed now
+	 * @param message Console line
+	 * @param level Level of the line, can be null
+	 * @param loggerName Logger the line refers to, can be null
+	 */
+	public ConsoleLine(String message, Level level, String loggerName) {
+		this(message, level, loggerName, null, System.currentTimeMillis(), false);
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public Level getLevel() {
+		return level;
+	}
+
+	public String getLoggerName() {
+		return loggerName;
+	}
+
+	public String getThreadName() {
+		return threadName;
+	}
+
+	/**
+	 * Check if the log event that printed this line carried an exception
+	 * @return true if an exception was logged with this line
+	 */
+	public boolean isThrown() {
+		return thrown;
+	}
+
+	/**
+	 * Moment this line was printed
+	 * @return epoch milliseconds
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Monotonically increasing number identifying this line, assigned by the broadcaster before sending it
+	 * @return sequence number, 0 if not assigned yet
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Moment this line was handed to the broadcaster
+	 * @return System.nanoTime() at creation
+	 */
+	public long getEnqueuedAt() {
+		return enqueuedAt;
+	}
+}
@@ -0,0 +1,175 @@
+package es.mesacarlos.webconsole.console;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.logging.log4j.Level;
+
+/**
+ * Keeps the most recent console lines so reconnecting clients can ask only for the lines they missed.
+ * Lines are stored as UTF-8 bytes in a circular direct buffer, outside the Java heap, and indexed by their sequence number.
+ * The oldest lines are evicted when either the line limit or the byte limit is reached.
+ */
+public class ConsoleScrollback {
+	private final ByteBuffer data;
+	private final int byteCapacity;
+	private final int lineCapacity;
+	private final int[] offsets;
+	private final int[] lengths;
+	private final long[] timestamps;
+	private final Level[] levels;
+	private final String[] loggerNames;
+	private final String[] threadNames;
+	private final boolean[] thrown;
+
+	private long firstSequence = 1; // Sequence of the oldest stored line
+	private int count;
+	private int usedBytes;
+	private int writeOffset;
+
+	/**
+	 * @param lineCapacity Maximum amount of lines to keep
+	 * @param byteCapacity Maximum size of the stored lines, in bytes
+	 */
+	public ConsoleScrollback(int lineCapacity, int byteCapacity) {
+		this.lineCapacity = Math.max(1, lineCapacity);
+		this.byteCapacity = Math.max(1024, byteCapacity);
+		this.data = ByteBuffer.allocateDirect(this.byteCapacity);
+		this.offsets = new int[this.lineCapacity];
+		this.lengths = new int[this.lineCapacity];
+		this.timestamps = new long[this.lineCapacity];
+		this.levels = new Level[this.lineCapacity];
+		this.loggerNames = new String[this.lineCapacity];
+		this.threadNames = new String[this.lineCapacity];
+		this.thrown = new boolean[this.lineCapacity];
+	}
+
+	/**
+	 * Stores a line. Its sequence number must be the one following the last stored line.
+	 * @param line Console line with its sequence number already assigned
+	 */
+	public synchronized void append(ConsoleLine line) {
+		byte[] bytes = line.getMessage().getBytes(StandardCharsets.UTF_8);
+		int maxBytes = byteCapacity / 4; // Keep a single huge line from wiping the whole scrollback
+		if (bytes.length > maxBytes) {
+			int end = maxBytes;
+			while ((bytes[end] & 0xC0) == 0x80)
+				end--; // Cut before the character the limit falls in, never inside its UTF-8 sequence
+			bytes = Arrays.copyOf(bytes, end);
+		}
+
+		while (count > 0 && (count == lineCapacity || usedBytes + bytes.length > byteCapacity))
+			evictOldest();
+		if (count == 0)
+			firstSequence = line.getSequence();
+
+		int slot = (int) (line.getSequence() % lineCapacity);
+		offsets[slot] = writeOffset;
+		lengths[slot] = bytes.length;
+		timestamps[slot] = line.getTimestamp();
+		levels[slot] = line.getLevel();
+		loggerNames[slot] = line.getLoggerName();
+		threadNames[slot] = line.getThreadName();
+		thrown[slot] = line.isThrown();
+		write(writeOffset, bytes);
+		writeOffset = (writeOffset + bytes.length) % byteCapacity;
+		usedBytes += bytes.length;
+		count++;
+	}
+
+	/**
+	 * Get all stored lines newer than a given sequence number
+	 * @param sequence Last sequence number seen by the client
+	 * @return lines after that sequence, oldest first
+	 */
+	public List<ConsoleLine> since(long sequence) {
+		return since(sequence, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Get the oldest stored lines newer than a given sequence number, up to a size
+	 * @param sequence Last sequence number seen by the client
+	 * @param maxBytes Maximum size of the returned lines, in UTF-8 bytes. At least one line is returned if there is any.
+	 * @return lines after that sequence, oldest first
+	 */
+	public synchronized List<ConsoleLine> since(long sequence, int maxBytes) {
+		long last = getLastSequence();
+		if (sequence >= last)
+			return new ArrayList<ConsoleLine>();
+		long from = Math.max(sequence + 1, firstSequence);
+		List<ConsoleLine> lines = new ArrayList<ConsoleLine>((int) Math.min(1024, Math.max(0, last - from + 1)));
+		long bytesRead = 0;
+		for (long seq = from; seq <= last; seq++) {
+			int slot = (int) (seq % lineCapacity);
+			bytesRead += lengths[slot];
+			if (bytesRead > maxBytes && !lines.isEmpty())
+				break;
+			byte[] bytes = read(offsets[slot], lengths[slot]);
+			ConsoleLine line = new ConsoleLine(new String(bytes, StandardCharsets.UTF_8), levels[slot], loggerNames[slot],
+					threadNames[slot], timestamps[slot], thrown[slot]);
+			line.setSequence(seq);
+			lines.add(line);
+		}
+		return lines;
+	}
+
+	/**
+	 * Sequence number of the oldest stored line
+	 * @return first sequence, or the next sequence to be stored if empty
+	 */
+	public synchronized long getFirstSequence() {
+		return firstSequence;
+	}
+
+	/**
+	 * Sequence number of the newest stored line
+	 * @return last sequence, or first sequence - 1 if empty
+	 */
+	public synchronized long getLastSequence() {
+		return firstSequence + count - 1;
+	}
+
+	public synchronized int getLineCount() {
+		return count;
+	}
+
+	public synchronized int getUsedBytes() {
+		return usedBytes;
+	}
+
+	private void evictOldest() {
+		int slot = (int) (firstSequence % lineCapacity);
+		usedBytes -= lengths[slot];
+		loggerNames[slot] = null;
+		threadNames[slot] = null;
+		firstSequence++;
+		count--;
+	}
+
+	private void write(int offset, byte[] bytes) {
+		int firstPart = Math.min(bytes.length, byteCapacity - offset);
+		ByteBuffer target = data.duplicate();
+		target.position(offset);
+		target.put(bytes, 0, firstPart);
+		if (firstPart < bytes.length) {
+			target.position(0);
+			target.put(bytes, firstPart, bytes.length - firstPart);
+		}
+	}
+
+	private byte[] read(int offset, int length) {
+		byte[] bytes = new byte[length];
+		int firstPart = Math.min(length, byteCapacity - offset);
+		ByteBuffer source = data.duplicate();
+		source.position(offset);
+		source.get(bytes, 0, firstPart);
+		if (firstPart < length) {
+			source.position(0);
+			source.get(bytes, firstPart, length - firstPart);
+		}
+		return bytes;
+	}
+}
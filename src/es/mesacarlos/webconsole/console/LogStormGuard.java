@@ -0,0 +1,177 @@
+package es.mesacarlos.webconsole.console;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+
+import es.mesacarlos.webconsole.util.Internationalization;
+
+/**
+ * Keeps a misbehaving plugin from flooding every viewer.
+ * Lines repeating one of the most recent distinct lines are collapsed into a single "repeated N times" line,
+ * and every logger gets a token bucket limiting the lines per second it can send to the clients.
+ * Suppressed lines are reported with summary lines, which go through the console pipeline like any other line.
+ * 
+ * Only used by the broadcaster thread, so it is not thread safe.
+ */
+public class LogStormGuard {
+	private final long duplicateWindowNanos;
+	private final int duplicateHistory;
+	private final double tokensPerNano;
+	private final double burst;
+
+	private final LinkedHashMap<String, RecentLine> recentLines = new LinkedHashMap<String, RecentLine>(16, 0.75f, true);
+	private final HashMap<String, TokenBucket> buckets = new HashMap<String, TokenBucket>();
+
+	private volatile long collapsedLines;
+	private volatile long rateLimitedLines;
+
+	/**
+	 * @param duplicateWindowMillis Time during which a repeated line is collapsed, 0 to disable duplicate collapsing
+	 * @param duplicateHistory Amount of recent distinct lines compared against every new line
+	 * @param linesPerSecond Lines per second each logger can send, 0 to disable rate limiting
+	 * @param burst Lines a logger can send at once before being limited
+	 */
+	public LogStormGuard(long duplicateWindowMillis, int duplicateHistory, int linesPerSecond, int burst) {
+		this.duplicateWindowNanos = TimeUnit.MILLISECONDS.toNanos(duplicateWindowMillis);
+		this.duplicateHistory = Math.max(1, duplicateHistory);
+		this.tokensPerNano = linesPerSecond / 1_000_000_000.0;
+		this.burst = Math.max(1, burst);
+	}
+
+	/**
+	 * Check if a line can be sent to the clients
+	 * @param line Console line
+	 * @param now Current System.nanoTime()
+	 * @param summaries List where summary lines that must be sent before this one are added
+	 * @return true if the line must be sent, false if it was suppressed
+	 */
+	public boolean admit(ConsoleLine line, long now, List<ConsoleLine> summaries) {
+		if (duplicateWindowNanos > 0) {
+			RecentLine recent = recentLines.get(line.getMessage());
+			if (recent != null && now - recent.lastSeen <= duplicateWindowNanos) {
+				recent.lastSeen = now;
+				recent.repeats++;
+				collapsedLines++;
+				return false;
+			}
+			if (recent != null)
+				flushRepeats(recent, now, summaries);
+
+			recentLines.put(line.getMessage(), new RecentLine(line, now));
+			if (recentLines.size() > duplicateHistory) {
+				Iterator<RecentLine> eldest = recentLines.values().iterator();
+				RecentLine evicted = eldest.next();
+				eldest.remove();
+				flushRepeats(evicted, now, summaries);
+			}
+		}
+
+		if (tokensPerNano > 0) {
+			String loggerName = line.getLoggerName() == null ? "" : line.getLoggerName();
+			TokenBucket bucket = buckets.get(loggerName);
+			if (bucket == null) {
+				bucket = new TokenBucket(burst, now);
+				buckets.put(loggerName, bucket);
+			}
+			if (!bucket.tryConsume(now)) {
+				bucket.suppressed++;
+				rateLimitedLines++;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Builds the summary lines of the lines suppressed so far. Called periodically by the broadcaster.
+	 * @param now Current System.nanoTime()
+	 * @param summaries List where the summary lines are added
+	 */
+	public void drainSummaries(long now, List<ConsoleLine> summaries) {
+		for (RecentLine recent : recentLines.values())
+			if (recent.repeats > 0 && (now - recent.windowStart >= duplicateWindowNanos || now - recent.lastSeen > duplicateWindowNanos))
+				flushRepeats(recent, now, summaries);
+
+		Iterator<Map.Entry<String, TokenBucket>> it = buckets.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, TokenBucket> entry = it.next();
+			TokenBucket bucket = entry.getValue();
+			if (bucket.suppressed > 0) {
+				summaries.add(new ConsoleLine(Internationalization.getPhrase("console-lines-suppressed", bucket.suppressed, entry.getKey()),
+						Level.WARN, entry.getKey()));
+				bucket.suppressed = 0;
+			} else if (bucket.refill(now) >= burst) {
+				it.remove(); // Idle logger, a new bucket will be created if it logs again
+			}
+		}
+	}
+
+	private void flushRepeats(RecentLine recent, long now, List<ConsoleLine> summaries) {
+		if (recent.repeats > 0) {
+			ConsoleLine first = recent.line;
+			summaries.add(new ConsoleLine(Internationalization.getPhrase("console-line-repeated", recent.repeats, first.getMessage()),
+					first.getLevel(), first.getLoggerName()));
+		}
+		recent.repeats = 0;
+		recent.windowStart = now;
+	}
+
+	/**
+	 * Lines collapsed into a "repeated N times" line since the plugin started
+	 * @return collapsed lines
+	 */
+	public long getCollapsedLines() {
+		return collapsedLines;
+	}
+
+	/**
+	 * Lines suppressed by the per-logger rate limit since the plugin started
+	 * @return rate limited lines
+	 */
+	public long getRateLimitedLines() {
+		return rateLimitedLines;
+	}
+
+	private static class RecentLine {
+		private final ConsoleLine line;
+		private long lastSeen;
+		private long windowStart;
+		private int repeats;
+
+		private RecentLine(ConsoleLine line, long now) {
+			this.line = line;
+			this.lastSeen = now;
+			this.windowStart = now;
+		}
+	}
+
+	private class TokenBucket {
+		private double tokens;
+		private long lastRefill;
+		private long suppressed;
+
+		private TokenBucket(double tokens, long now) {
+			this.tokens = tokens;
+			this.lastRefill = now;
+		}
+
+		private double refill(long now) {
+			tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+			lastRefill = now;
+			return tokens;
+		}
+
+		private boolean tryConsume(long now) {
+			if (refill(now) < 1)
+				return false;
+			tokens--;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package es.mesacarlos.webconsole.console;
+
+/**
+ * What to do with a new console line when the broadcast queue is full
+ */
+public enum OverflowPolicy {
+	/** Discard the oldest queued line to make room for the new one. Logging never waits. */
+	DROP_OLDEST,
+	/** Wait up to the configured timeout for the broadcaster to make room, then discard the new line. */
+	BLOCK;
+
+	/**
+	 * Parse a policy name from config.yml
+	 * @param name Policy name, case insensitive
+	 * @return matching policy, DROP_OLDEST if the name is not valid
+	 */
+	public static OverflowPolicy fromString(String name) {
+		for (OverflowPolicy policy : values())
+			if (policy.name().equalsIgnoreCase(name))
+				return policy;
+		return DROP_OLDEST;
+	}
+}
@@ -0,0 +1,135 @@
+package es.mesacarlos.webconsole.minecraft;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bukkit.command.ConsoleCommandSender;
+
+/**
+ * Console sender that records the messages a command sends back while it is dispatched, so they can be returned
+ * to the client that ran it. Everything else is delegated to the real console sender, and messages are also
+ * forwarded to it unless broadcasting is disabled.
+ *
+ * It is a dynamic proxy, so it implements ConsoleCommandSender as defined by whichever server version is running.
+ * Vanilla commands answer through the server's own console source instead of the sender, so their output is not captured.
+ */
+public class CapturingConsoleSender implements InvocationHandler {
+	private static volatile Method plainTextSerializer;
+	private static volatile Object plainText;
+	private static volatile boolean adventureChecked;
+
+	private final ConsoleCommandSender console;
+	private final boolean broadcast;
+	private final ConsoleCommandSender proxy;
+	private final List<String> output = Collections.synchronizedList(new ArrayList<String>());
+
+	/**
+	 * @param console Real console sender
+	 * @param broadcast true to also send the messages to the real console, where every viewer sees them
+	 */
+	public CapturingConsoleSender(ConsoleCommandSender console, boolean broadcast) {
+		this.console = console;
+		this.broadcast = broadcast;
+		this.proxy = (ConsoleCommandSender) Proxy.newProxyInstance(CapturingConsoleSender.class.getClassLoader(),
+				new Class<?>[] { ConsoleCommandSender.class }, this);
+	}
+
+	/**
+	 * Sender to pass to Bukkit.dispatchCommand
+	 * @return capturing sender
+	 */
+	public ConsoleCommandSender getSender() {
+		return proxy;
+	}
+
+	/**
+	 * Messages received so far, in order
+	 * @return captured output
+	 */
+	public List<String> getOutput() {
+		synchronized (output) {
+			return new ArrayList<String>(output);
+		}
+	}
+
+	@Override
+	public Object invoke(Object self, Method method, Object[] args) throws Throwable {
+		switch (method.getName()) {
+		case "equals":
+			if (args != null && args.length == 1 && method.getParameterTypes()[0] == Object.class)
+				return self == args[0];
+			break;
+		case "hashCode":
+			if (args == null)
+				return System.identityHashCode(self);
+			break;
+		case "sendMessage":
+		case "sendRawMessage":
+		case "sendPlainMessage":
+			if (args != null) {
+				for (Object arg : args)
+					capture(arg);
+				if (!broadcast)
+					return null;
+			}
+			break;
+		default:
+			break;
+		}
+
+		try {
+			return method.invoke(console, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Records a message argument. Other arguments of the send methods, like the sender UUID, are ignored.
+	 * @param arg Argument of a send method
+	 */
+	private void capture(Object arg) {
+		if (arg instanceof String) {
+			output.add((String) arg);
+		} else if (arg instanceof String[]) {
+			Collections.addAll(output, (String[]) arg);
+		} else if (arg != null && arg.getClass().getName().startsWith("net.kyori.adventure.text.")) {
+			String text = toPlainText(arg);
+			if (text != null)
+				output.add(text);
+		}
+	}
+
+	/**
+	 * Converts an Adventure component, sent by Paper servers, to plain text.
+	 * Adventure is optional, so it is looked up by reflection.
+	 * @param component Component
+	 * @return plain text, or null if it cannot be converted
+	 */
+	private static String toPlainText(Object component) {
+		if (!adventureChecked) {
+			try {
+				Class<?> serializer = Class.forName("net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer");
+				plainText = serializer.getMethod("plainText").invoke(null);
+				plainTextSerializer = serializer.getMethod("serialize", Class.forName("net.kyori.adventure.text.Component"));
+			} catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+				plainTextSerializer = null; // Not available
+			}
+			adventureChecked = true;
+		}
+
+		Method serialize = plainTextSerializer;
+		if (serialize == null)
+			return null;
+		try {
+			return (String) serialize.invoke(plainText, component);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+}
@@ -1,6 +1,6 @@
 package es.mesacarlos.webconsole.minecraft;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -8,21 +8,41 @@ import org.bukkit.command.CommandSender;
 
 import es.mesacarlos.webconsole.auth.LoginManager;
 import es.mesacarlos.webconsole.auth.ConnectedUser;
+import es.mesacarlos.webconsole.config.ConfigManager;
+import es.mesacarlos.webconsole.console.ConsoleBroadcaster;
+import es.mesacarlos.webconsole.websocket.SendQueue;
+import es.mesacarlos.webconsole.websocket.WSServer;
 import es.mesacarlos.webconsole.util.Internationalization;
 
 public class WebConsoleCommand implements CommandExecutor {
 	private String version;
+	private WSServer wsServer;
+	private ConsoleBroadcaster consoleBroadcaster;
 
-	public WebConsoleCommand(String version) {
+	public WebConsoleCommand(String version, WSServer wsServer, ConsoleBroadcaster consoleBroadcaster) {
 		this.version = version;
+		this.wsServer = wsServer;
+		this.consoleBroadcaster = consoleBroadcaster;
 	}
 
 	@Override
 	public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+		if (args.length == 1 && args[0].equalsIgnoreCase("reload")) {
+			ConfigManager.getInstance().reload(task -> {
+				if (!wsServer.submitLogin(task))
+					task.run(); // Login pool saturated or stopped, hash on this thread
+			});
+			sender.sendMessage(Internationalization.getPhrase("webconsole-reloaded", ConfigManager.getInstance().getAllUsers().size()));
+			return true;
+		}
+		
 		StringBuilder msg = new StringBuilder();
 
 		msg.append(Internationalization.getPhrase("webconsole-version", version) + "\n");
-		ArrayList<ConnectedUser> users = LoginManager.getInstance().getLoggedInUsers();
+		msg.append(Internationalization.getPhrase("webconsole-broadcast-stats", consoleBroadcaster.getEnqueued(),
+				consoleBroadcaster.getDropped(), consoleBroadcaster.getQueueDepth(),
+				String.format("%.2f", consoleBroadcaster.getLagMillis())) + "\n");
+		List<ConnectedUser> users = LoginManager.getInstance().getLoggedInUsers();
 		
 		if (users.isEmpty()) {
 			msg.append(Internationalization.getPhrase("webconsole-no-connections"));
@@ -35,6 +55,14 @@ public class WebConsoleCommand implements CommandExecutor {
 					msg.append("\n");
 			}
 		}
+		
+		if (wsServer != null) {
+			for (SendQueue queue : wsServer.getSendQueues()) {
+				msg.append("\n" + Internationalization.getPhrase("webconsole-connection-stats", queue.getConnection().getRemoteSocketAddress(),
+						queue.getBufferedFrames(), queue.measureBufferedBytes(), queue.getPendingLines(),
+						queue.getDroppedLines(), queue.getDroppedFrames()));
+			}
+		}
 
 		sender.sendMessage(msg.toString());
 		return true;
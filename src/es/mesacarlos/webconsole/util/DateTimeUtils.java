@@ -4,11 +4,43 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 
 public class DateTimeUtils {
+	private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = ThreadLocal.withInitial(() -> new SimpleDateFormat("dd-MM-yyyy HH:mm:ss"));
+	private static final ThreadLocal<SimpleDateFormat> TIME_FORMAT = ThreadLocal.withInitial(() -> new SimpleDateFormat("HH:mm:ss"));
+	
+	// Last formatted second. Console lines come in bursts within the same second, so most of them reuse it.
+	private static volatile CachedTime lastTime = new CachedTime(Long.MIN_VALUE, null);
+	
 	public static String getDateAsString() {
-		return new SimpleDateFormat("dd-MM-yyyy HH:mm:ss").format(new Date());
+		return DATE_FORMAT.get().format(new Date());
 	}
 	
 	public static String getTimeAsString() {
-		return new SimpleDateFormat("HH:mm:ss").format(new Date());
+		return getTimeAsString(System.currentTimeMillis());
+	}
+	
+	/**
+	 * Formats a moment as HH:mm:ss. The text is computed once per second and shared by all the calls within that second.
+	 * @param millis Epoch milliseconds
+	 * @return formatted time
+	 */
+	public static String getTimeAsString(long millis) {
+		long second = Math.floorDiv(millis, 1000);
+		CachedTime cached = lastTime;
+		if (cached.second == second)
+			return cached.text;
+		
+		String text = TIME_FORMAT.get().format(new Date(millis));
+		lastTime = new CachedTime(second, text);
+		return text;
+	}
+	
+	private static class CachedTime {
+		private final long second;
+		private final String text;
+		
+		private CachedTime(long second, String text) {
+			this.second = second;
+			this.text = text;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -37,12 +37,12 @@ public class FileManager {
     public static class FileContent {
         public String path;
         public String name;
-        public String content;
+        public byte[] content;
         public String encoding;
         public long size;
         public boolean isBinary;
 
-        public FileContent(String path, String name, String content, long size, boolean isBinary) {
+        public FileContent(String path, String name, byte[] content, long size, boolean isBinary) {
             this.path = path;
             this.name = name;
             this.content = content;
@@ -180,38 +180,18 @@ public class FileManager {
         File file = new File(path);
         String name = file.getName();
         boolean isBinary = !isTextFile(name);
-        String content = "";
+        byte[] content;
         
-        if (isBinary) {
-            try {
-                byte[] fileContent = Files.readAllBytes(file.toPath());
-                content = Base64.getEncoder().encodeToString(fileContent);
-            } catch (IOException e) {
-                throw new RuntimeException("Error reading binary file: " + e.getMessage());
-            }
-        } else {
-            try {
-                content = new String(Files.readAllBytes(file.toPath()), "UTF-8");
-            } catch (IOException e) {
-                throw new RuntimeException("Error reading file: " + e.getMessage());
-            }
+        // Kept as bytes, the response encodes them as base64 or decodes them as UTF-8 while it is written
+        try {
+            content = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException((isBinary ? "Error reading binary file: " : "Error reading file: ") + e.getMessage());
         }
         
         return new FileContent(path, name, content, file.length(), isBinary);
     }
 
-    public static String readFileAsJson(String path) {
-        FileContent fileContent = readFile(path);
-        JsonObject jsonObj = new JsonObject();
-        jsonObj.addProperty("path", fileContent.path);
-        jsonObj.addProperty("name", fileContent.name);
-        jsonObj.addProperty("content", fileContent.content);
-        jsonObj.addProperty("encoding", fileContent.encoding);
-        jsonObj.addProperty("size", fileContent.size);
-        jsonObj.addProperty("is_binary", fileContent.isBinary);
-        return gson.toJson(jsonObj);
-    }
-
     public static boolean writeFile(String path, String content) {
         if (!isValidFilePath(path)) {
             throw new SecurityException("Invalid file path: " + path);
@@ -295,7 +275,7 @@ public class FileManager {
         return String.format("%.1f %sB", bytes / Math.pow(1024, exp), pre);
     }
 
-    public static String readFileAsBase64(String path) {
+    public static byte[] readFileForDownload(String path) {
         File file = new File(path);
         if (!file.exists() || !file.isFile()) {
             throw new RuntimeException("File not found: " + path);
@@ -314,27 +294,9 @@ public class FileManager {
         }
         
         try {
-            byte[] fileContent = Files.readAllBytes(file.toPath());
-            return Base64.getEncoder().encodeToString(fileContent);
+            return Files.readAllBytes(file.toPath());
         } catch (IOException e) {
             throw new RuntimeException("Error reading file: " + e.getMessage());
         }
     }
-
-    public static String getDownloadResponse(String path) {
-        File file = new File(path);
-        if (!file.exists() || !file.isFile()) {
-            throw new RuntimeException("File not found: " + path);
-        }
-        
-        String base64Content = readFileAsBase64(path);
-        
-        JsonObject response = new JsonObject();
-        response.addProperty("filename", file.getName());
-        response.addProperty("path", path);
-        response.addProperty("size", file.length());
-        response.addProperty("content", base64Content);
-        
-        return gson.toJson(response);
-    }
 }
@@ -7,13 +7,14 @@ import org.apache.logging.log4j.core.LogEvent;
 import org.apache.logging.log4j.core.Logger;
 import org.apache.logging.log4j.message.Message;
 
-import es.mesacarlos.webconsole.websocket.WSServer;
+import es.mesacarlos.webconsole.console.ConsoleBroadcaster;
+import es.mesacarlos.webconsole.console.ConsoleLine;
 
 public class LogFilter implements Filter{
-	private WSServer wsServer;
+	private ConsoleBroadcaster broadcaster;
 
-	public LogFilter(WSServer wsServer) {
-		this.wsServer = wsServer;
+	public LogFilter(ConsoleBroadcaster broadcaster) {
+		this.broadcaster = broadcaster;
 	}
 
 	@Override
@@ -130,7 +131,8 @@ public class LogFilter implements Filter{
 
 	@Override
 	public Result filter(LogEvent event) {
-        wsServer.onNewConsoleLinePrinted(event.getMessage().getFormattedMessage());
+        broadcaster.offer(new ConsoleLine(event.getMessage().getFormattedMessage(), event.getLevel(), event.getLoggerName(),
+                event.getThreadName(), event.getTimeMillis(), event.getThrown() != null));
         return null;
 	}
 
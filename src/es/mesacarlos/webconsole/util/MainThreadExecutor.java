@@ -0,0 +1,247 @@
+package es.mesacarlos.webconsole.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+import org.bukkit.Bukkit;
+
+/**
+ * Runs the work of WebConsole commands that touches the Bukkit API on the main server thread.
+ * Tasks are queued from any thread and drained by a repeating task once per tick, which spends at most a fixed
+ * time budget on them. Tasks left when the budget runs out wait for the next tick, so a flood of requests
+ * delays their own answers instead of pushing the server tick past 50 ms.
+ * Work made of several steps, like a batch of commands, runs as a single task that resumes in the next tick
+ * when it runs out of budget.
+ */
+public class MainThreadExecutor implements Runnable, Executor {
+	private final ConcurrentLinkedQueue<Task<?>> queue = new ConcurrentLinkedQueue<Task<?>>();
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	// Step tasks that ran out of budget, resumed before the queue in the next tick
+	private final ConcurrentLinkedQueue<Steps> resumed = new ConcurrentLinkedQueue<Steps>();
+	private final long budgetNanos;
+	private long deadline; // End of the budget of the current tick, only used on the main thread
+	private volatile boolean stopped;
+
+	private final AtomicLong executed = new AtomicLong();
+	private volatile long overBudgetTicks;
+	private volatile long carriedOverTicks;
+	private volatile long lastTickNanos;
+	private volatile long maxTickNanos;
+
+	/**
+	 * @param budgetMicros Maximum time spent running queued tasks in a single tick
+	 */
+	public MainThreadExecutor(long budgetMicros) {
+		this.budgetNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, budgetMicros));
+	}
+
+	/**
+	 * Runs a task on the main thread. If called from the main thread, it runs right away.
+	 * @param task Task using the Bukkit API
+	 * @param <T> Result type
+	 * @return future completed with the result once the task has run
+	 */
+	public <T> CompletableFuture<T> submit(Callable<T> task) {
+		Task<T> queued = new Task<T>(task);
+		if (Bukkit.isPrimaryThread()) {
+			queued.run();
+		} else if (stopped) {
+			queued.future.cancel(false);
+		} else {
+			queueDepth.incrementAndGet();
+			queue.add(queued);
+			if (stopped)
+				shutdown(); // Stopped while adding it
+		}
+		return queued.future;
+	}
+
+	/**
+	 * Runs a sequence of steps on the main thread as a single task. The steps run in order, without other queued tasks
+	 * between them, as long as the tick budget lasts. The remaining steps resume first thing in the next tick.
+	 * @param count Number of steps
+	 * @param step Runs the step with the given index. It should handle its own errors, as an exception ends the task.
+	 * @return future completed once every step has run, or cancelled if the executor stops first
+	 */
+	public CompletableFuture<Void> submitSteps(int count, IntConsumer step) {
+		Steps steps = new Steps(count, step);
+		submit(() -> {
+			steps.run();
+			return null;
+		}).whenComplete((result, error) -> {
+			if (error != null)
+				steps.future.completeExceptionally(error); // Cancelled while queued
+		});
+		return steps.future;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		submit(() -> {
+			command.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Drains the queue until it is empty or the tick budget is spent. Called once per tick by the scheduler.
+	 * At least one task or step runs every tick, so the queue always makes progress.
+	 */
+	@Override
+	public void run() {
+		long start = System.nanoTime();
+		deadline = start + budgetNanos;
+		boolean budgetSpent = false;
+		Steps steps;
+		for (int pending = resumed.size(); pending > 0 && !budgetSpent && (steps = resumed.poll()) != null; pending--) {
+			steps.run(); // Requeues itself if it runs out of budget again
+			budgetSpent = System.nanoTime() - deadline >= 0;
+		}
+
+		Task<?> task;
+		while (!budgetSpent && (task = queue.poll()) != null) {
+			queueDepth.decrementAndGet();
+			task.run();
+			executed.incrementAndGet();
+			if (System.nanoTime() - deadline >= 0) {
+				budgetSpent = true;
+				break;
+			}
+		}
+
+		long elapsed = System.nanoTime() - start;
+		lastTickNanos = elapsed;
+		if (elapsed > maxTickNanos)
+			maxTickNanos = elapsed;
+		if (elapsed > budgetNanos)
+			overBudgetTicks++;
+		if (budgetSpent && !(queue.isEmpty() && resumed.isEmpty()))
+			carriedOverTicks++;
+	}
+
+	/**
+	 * Cancels the queued tasks, releasing any thread waiting for them, and rejects new ones
+	 */
+	public void shutdown() {
+		stopped = true;
+		Task<?> task;
+		while ((task = queue.poll()) != null) {
+			queueDepth.decrementAndGet();
+			task.future.cancel(false);
+		}
+		Steps steps;
+		while ((steps = resumed.poll()) != null)
+			steps.future.cancel(false);
+	}
+
+	/**
+	 * Tasks waiting for the next tick
+	 * @return queue depth
+	 */
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	/**
+	 * Tasks run since the plugin started
+	 * @return executed tasks
+	 */
+	public long getExecutedTasks() {
+		return executed.get();
+	}
+
+	/**
+	 * Ticks that spent more than the budget on queued tasks, because a single task took longer than the remaining budget
+	 * @return over budget ticks
+	 */
+	public long getOverBudgetTicks() {
+		return overBudgetTicks;
+	}
+
+	/**
+	 * Ticks that ran out of budget with tasks still queued, which were carried to the next tick
+	 * @return carried over ticks
+	 */
+	public long getCarriedOverTicks() {
+		return carriedOverTicks;
+	}
+
+	public double getBudgetMillis() {
+		return budgetNanos / 1_000_000.0;
+	}
+
+	/**
+	 * Time spent on queued tasks in the last tick
+	 * @return time in milliseconds
+	 */
+	public double getLastTickMillis() {
+		return lastTickNanos / 1_000_000.0;
+	}
+
+	/**
+	 * Highest time spent on queued tasks in a single tick
+	 * @return time in milliseconds
+	 */
+	public double getMaxTickMillis() {
+		return maxTickNanos / 1_000_000.0;
+	}
+
+	private class Steps implements Runnable {
+		private final int count;
+		private final IntConsumer step;
+		private final CompletableFuture<Void> future = new CompletableFuture<Void>();
+		private int next; // Only used on the main thread
+
+		Steps(int count, IntConsumer step) {
+			this.count = count;
+			this.step = step;
+		}
+
+		@Override
+		public void run() {
+			if (future.isDone())
+				return; // Cancelled while waiting for the next tick
+			try {
+				do {
+					step.accept(next++);
+				} while (next < count && System.nanoTime() - deadline < 0);
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+				return;
+			}
+			if (next < count) {
+				resumed.add(this);
+				if (stopped)
+					shutdown(); // Stopped while it ran
+			} else {
+				future.complete(null);
+			}
+		}
+	}
+
+	private static class Task<T> implements Runnable {
+		private final Callable<T> callable;
+		private final CompletableFuture<T> future = new CompletableFuture<T>();
+
+		Task(Callable<T> callable) {
+			this.callable = callable;
+		}
+
+		@Override
+		public void run() {
+			if (future.isDone())
+				return; // Cancelled while queued
+			try {
+				future.complete(callable.call());
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package es.mesacarlos.webconsole.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer used to hand elements from many producer threads to a single consumer thread.
+ * Every slot carries a sequence number telling whether it is ready to be written or read, so neither side ever takes a lock.
+ * The read cursor is advanced with a CAS, which lets a producer evict the oldest element when the buffer is full.
+ * @param <E> Type of the elements stored
+ */
+public class MpscRingBuffer<E> {
+	private final int mask;
+	private final AtomicReferenceArray<E> buffer;
+	private final AtomicLongArray sequences;
+	private final AtomicLong writeCursor = new AtomicLong();
+	private final AtomicLong readCursor = new AtomicLong();
+
+	/**
+	 * @param capacity Maximum amount of elements, rounded up to the next power of two
+	 */
+	public MpscRingBuffer(int capacity) {
+		int size = 1;
+		while (size < Math.max(2, capacity))
+			size <<= 1;
+		this.mask = size - 1;
+		this.buffer = new AtomicReferenceArray<E>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+			sequences.set(i, i);
+	}
+
+	/**
+	 * Inserts an element if there is room for it
+	 * @param element Element to insert, cannot be null
+	 * @return true if the element was inserted, false if the buffer is full
+	 */
+	public boolean offer(E element) {
+		while (true) {
+			long position = writeCursor.get();
+			int index = (int) (position & mask);
+			long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (writeCursor.compareAndSet(position, position + 1)) {
+					buffer.lazySet(index, element);
+					sequences.lazySet(index, position + 1);
+					return true;
+				}
+			} else if (difference < 0) {
+				return false; // Slot not released by the consumer yet, buffer is full
+			}
+		}
+	}
+
+	/**
+	 * Removes the oldest element
+	 * @return The oldest element, or null if the buffer is empty
+	 */
+	public E poll() {
+		while (true) {
+			long position = readCursor.get();
+			int index = (int) (position & mask);
+			long difference = sequences.get(index) - (position + 1);
+			if (difference == 0) {
+				if (readCursor.compareAndSet(position, position + 1)) {
+					E element = buffer.get(index);
+					buffer.lazySet(index, null);
+					sequences.lazySet(index, position + mask + 1);
+					return element;
+				}
+			} else if (difference < 0) {
+				return null; // Slot not published by a producer yet, buffer is empty
+			}
+		}
+	}
+
+	/**
+	 * Approximate amount of elements waiting to be consumed
+	 * @return elements in the buffer
+	 */
+	public int size() {
+		long size = writeCursor.get() - readCursor.get();
+		return (int) Math.max(0, Math.min(size, mask + 1));
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int capacity() {
+		return mask + 1;
+	}
+}
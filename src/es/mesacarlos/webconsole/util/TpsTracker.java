@@ -1,34 +1,180 @@
 package es.mesacarlos.webconsole.util;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures server ticks with System.nanoTime. Runs every tick on the main thread, which is the only writer; any
+ * thread can read the TPS and the tick duration (MSPT) statistics through {@link #snapshot()} without locking.
+ * <p>
+ * Tick durations are the time between two consecutive runs of this task, so a healthy server reports about 50 ms.
+ * They are kept in a histogram of 0.1 ms buckets covering the last minute of ticks.
+ */
 public class TpsTracker implements Runnable {
-    public static int TICK_COUNT = 0;
-    public static long[] TICKS = new long[600];
-    public static long LAST_TICK = 0L;
+    private static final int TICKS_PER_SECOND = 20;
+    private static final int[] WINDOW_SECONDS = { 5, 60, 300, 900 };
+    private static final int HISTORY = 900 * TICKS_PER_SECOND + 1;
+    private static final int DURATION_WINDOW = 60 * TICKS_PER_SECOND;
+    private static final long BUCKET_NANOS = 100_000L;
+    private static final int BUCKETS = 10_000; // Up to 1 second, longer ticks go to the last bucket
+
+    private static final AtomicLongArray TICKS = new AtomicLongArray(HISTORY);
+    private static final AtomicLongArray DURATIONS = new AtomicLongArray(DURATION_WINDOW);
+    private static final AtomicLongArray HISTOGRAM = new AtomicLongArray(BUCKETS);
+    // Odd while the main thread is recording a tick. Readers retry if it was odd or changed while they read
+    private static final AtomicLong VERSION = new AtomicLong();
+    private static volatile long tickCount = 0;
 
+    /**
+     * @return TPS over the last 5 seconds
+     */
     public static double getTPS() {
-        return getTPS(100);
+        return snapshot().getTps5s();
     }
 
-    public static double getTPS(int ticks) {
-        if (TICK_COUNT < ticks) {
-            return 20.0;
-        } else {
-            int target = (TICK_COUNT - 1 - ticks) % TICKS.length;
-            long elapsed = System.currentTimeMillis() - TICKS[target];
-            return (double)ticks / ((double)elapsed / 1000.0);
+    /**
+     * Takes a consistent copy of the tick statistics
+     * @return TPS and MSPT statistics of the last ticks
+     */
+    public static Snapshot snapshot() {
+        long[] ticks = new long[WINDOW_SECONDS.length];
+        long[] histogram = new long[BUCKETS];
+        long version, count, maxDuration, minDuration;
+        do {
+            version = VERSION.get();
+            count = tickCount;
+            for (int i = 0; i < WINDOW_SECONDS.length; i++) {
+                long back = Math.min(WINDOW_SECONDS[i] * TICKS_PER_SECOND, count - 1);
+                ticks[i] = back > 0 ? TICKS.get((int) ((count - 1 - back) % HISTORY)) : 0L;
+            }
+            for (int i = 0; i < BUCKETS; i++)
+                histogram[i] = HISTOGRAM.get(i);
+            maxDuration = 0L;
+            minDuration = Long.MAX_VALUE;
+            int durations = (int) Math.min(count - 1, DURATION_WINDOW);
+            for (int i = 0; i < durations; i++) {
+                long duration = DURATIONS.get(i);
+                maxDuration = Math.max(maxDuration, duration);
+                minDuration = Math.min(minDuration, duration);
+            }
+        } while ((version & 1) != 0 || version != VERSION.get());
+
+        double[] tps = new double[WINDOW_SECONDS.length];
+        long now = System.nanoTime();
+        for (int i = 0; i < WINDOW_SECONDS.length; i++) {
+            long back = Math.min(WINDOW_SECONDS[i] * TICKS_PER_SECOND, count - 1);
+            // Measuring up to now instead of the last tick makes a stalled server report a falling TPS
+            tps[i] = back < TICKS_PER_SECOND ? 20.0 : back / ((now - ticks[i]) / 1_000_000_000.0);
         }
+        if (minDuration == Long.MAX_VALUE)
+            minDuration = 0L;
+        return new Snapshot(count, tps, minDuration, percentile(histogram, 0.5, maxDuration),
+                percentile(histogram, 0.95, maxDuration), percentile(histogram, 0.99, maxDuration), maxDuration);
     }
 
-    public static long getElapsed(int tickID) {
-        if (TICK_COUNT - tickID >= TICKS.length) {
+    private static long percentile(long[] histogram, double fraction, long maxDuration) {
+        long total = 0;
+        for (long bucket : histogram)
+            total += bucket;
+        if (total == 0)
+            return 0L;
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank)
+                return Math.min((i + 1) * BUCKET_NANOS, maxDuration); // Upper bound of the bucket
         }
+        return maxDuration;
+    }
 
-        long time = TICKS[tickID % TICKS.length];
-        return System.currentTimeMillis() - time;
+    private static int bucketOf(long duration) {
+        return (int) Math.min(duration / BUCKET_NANOS, BUCKETS - 1);
     }
 
     public void run() {
-        TICKS[TICK_COUNT % TICKS.length] = System.currentTimeMillis();
-        ++TICK_COUNT;
+        long now = System.nanoTime();
+        VERSION.incrementAndGet();
+        if (tickCount > 0) {
+            int slot = (int) ((tickCount - 1) % DURATION_WINDOW);
+            if (tickCount > DURATION_WINDOW)
+                HISTOGRAM.decrementAndGet(bucketOf(DURATIONS.get(slot)));
+            long duration = now - TICKS.get((int) ((tickCount - 1) % HISTORY));
+            DURATIONS.set(slot, duration);
+            HISTOGRAM.incrementAndGet(bucketOf(duration));
+        }
+        TICKS.set((int) (tickCount % HISTORY), now);
+        ++tickCount;
+        VERSION.incrementAndGet();
+    }
+
+    /**
+     * TPS and tick duration statistics at a point in time. Durations are in nanoseconds
+     */
+    public static class Snapshot {
+        private final long ticks;
+        private final double[] tps;
+        private final long minTickNanos;
+        private final long medianTickNanos;
+        private final long p95TickNanos;
+        private final long p99TickNanos;
+        private final long maxTickNanos;
+
+        private Snapshot(long ticks, double[] tps, long minTickNanos, long medianTickNanos, long p95TickNanos,
+                long p99TickNanos, long maxTickNanos) {
+            this.ticks = ticks;
+            this.tps = tps;
+            this.minTickNanos = minTickNanos;
+            this.medianTickNanos = medianTickNanos;
+            this.p95TickNanos = p95TickNanos;
+            this.p99TickNanos = p99TickNanos;
+            this.maxTickNanos = maxTickNanos;
+        }
+
+        /**
+         * @return Ticks measured since the plugin was enabled
+         */
+        public long getTicks() {
+            return ticks;
+        }
+
+        public double getTps5s() {
+            return tps[0];
+        }
+
+        public double getTps1m() {
+            return tps[1];
+        }
+
+        public double getTps5m() {
+            return tps[2];
+        }
+
+        public double getTps15m() {
+            return tps[3];
+        }
+
+        /**
+         * Tick durations are measured over the last minute. Percentiles are accurate to 0.1 ms
+         */
+        public long getMinTickNanos() {
+            return minTickNanos;
+        }
+
+        public long getMedianTickNanos() {
+            return medianTickNanos;
+        }
+
+        public long getP95TickNanos() {
+            return p95TickNanos;
+        }
+
+        public long getP99TickNanos() {
+            return p99TickNanos;
+        }
+
+        public long getMaxTickNanos() {
+            return maxTickNanos;
+        }
     }
 }
@@ -0,0 +1,285 @@
+package es.mesacarlos.webconsole.websocket;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.bukkit.Bukkit;
+
+import es.mesacarlos.webconsole.util.Internationalization;
+
+/**
+ * Runs client commands away from the WebSocket threads.
+ * Every command type has its own concurrency limit, and commands over it wait in a queue of their type without holding a thread.
+ * On Java 21 or newer each command runs in its own virtual thread. Otherwise, the types with a configured limit, the slow ones
+ * like FILE_DOWNLOAD, READLOGFILE or EXEC, share a pool of platform threads, while the rest run on a pool reserved for them,
+ * so slow commands can never delay TPS or PLAYERS however many of them run at once.
+ */
+public class CommandExecutor {
+	private static final String DEFAULT_LIMIT = "DEFAULT";
+
+	private final ExecutorService executor;
+	private final ThreadPoolExecutor platformPool;
+	private final ThreadPoolExecutor reservedPool;
+	private final Map<String, Integer> limits;
+	private final int defaultLimit;
+	private final int queueCapacity;
+	private final ConcurrentHashMap<String, Lane> lanes = new ConcurrentHashMap<String, Lane>();
+	private final AtomicInteger queued = new AtomicInteger();
+
+	/**
+	 * @param workerThreads Size of the platform thread pool for the types with a configured limit, used when virtual threads
+	 *                      are not available. Other types get a pool of half this size.
+	 * @param useVirtualThreads Run each command in a virtual thread if the JVM supports them
+	 * @param queueCapacity Maximum commands waiting for their type to have a free slot, across all types
+	 * @param limits Maximum commands of each type running at the same time. The DEFAULT key applies to unlisted types.
+	 */
+	public CommandExecutor(int workerThreads, boolean useVirtualThreads, int queueCapacity, Map<String, Integer> limits) {
+		this.limits = new HashMap<String, Integer>(limits);
+		Integer fallback = this.limits.remove(DEFAULT_LIMIT);
+		this.defaultLimit = fallback != null ? fallback : workerThreads;
+		this.queueCapacity = queueCapacity;
+
+		ExecutorService virtual = useVirtualThreads ? newVirtualThreadExecutor() : null;
+		if (virtual != null) {
+			executor = virtual;
+			platformPool = null;
+			reservedPool = null;
+		} else {
+			AtomicInteger workerCount = new AtomicInteger();
+			platformPool = newPlatformPool(workerThreads, workerCount);
+			reservedPool = newPlatformPool(Math.max(1, workerThreads / 2), workerCount);
+			executor = platformPool;
+		}
+	}
+
+	private static ThreadPoolExecutor newPlatformPool(int threads, AtomicInteger workerCount) {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), runnable -> {
+			Thread t = new Thread(runnable, "WebConsole-Command-" + workerCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * Builds Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("WebConsole-Command-", 1).factory()).
+	 * Called through reflection because the plugin is built for Java 8.
+	 * @return executor, or null if the JVM has no virtual threads
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "WebConsole-Command-", 1L);
+			ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+			Method newExecutor = java.util.concurrent.Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			return (ExecutorService) newExecutor.invoke(null, factory);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null; // Java 20 or older
+		}
+	}
+
+	/**
+	 * Runs a command as soon as its type is below its concurrency limit
+	 * @param type Command name
+	 * @param task Command execution
+	 * @return true if the command was accepted, false if the queue is full or the executor is stopped
+	 */
+	public boolean submit(String type, Runnable task) {
+		Lane lane = lanes.computeIfAbsent(type, this::createLane);
+		Task command = new Task(lane, task);
+		synchronized (lane) {
+			if (lane.running >= lane.limit) {
+				if (queued.get() >= queueCapacity) {
+					lane.rejected.incrementAndGet();
+					return false;
+				}
+				queued.incrementAndGet();
+				lane.waiting.add(command);
+				return true;
+			}
+			lane.running++;
+		}
+		return start(command);
+	}
+
+	private Lane createLane(String type) {
+		Integer limit = limits.get(type);
+		// Types without a configured limit are the quick ones, they run on the reserved pool
+		ExecutorService laneExecutor = limit == null && reservedPool != null ? reservedPool : executor;
+		return new Lane(type, Math.max(1, limit != null ? limit : defaultLimit), laneExecutor);
+	}
+
+	private boolean start(Task command) {
+		try {
+			command.lane.executor.execute(command);
+			return true;
+		} catch (RejectedExecutionException e) {
+			synchronized (command.lane) {
+				command.lane.running--;
+			}
+			command.lane.rejected.incrementAndGet();
+			return false; // Stopped
+		}
+	}
+
+	/**
+	 * Called after a command finished, starting the next command of the same type if one is waiting
+	 * @param lane Type of the finished command
+	 */
+	private void onFinished(Lane lane) {
+		Task next;
+		synchronized (lane) {
+			next = lane.waiting.poll();
+			if (next == null)
+				lane.running--;
+			else
+				queued.decrementAndGet();
+		}
+		if (next != null)
+			start(next);
+	}
+
+	/**
+	 * Stops running commands and discards the waiting ones
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		if (reservedPool != null)
+			reservedPool.shutdownNow();
+	}
+
+	/**
+	 * Check if commands run in virtual threads
+	 * @return true if using virtual threads, false if using the platform thread pool
+	 */
+	public boolean isVirtualThreads() {
+		return platformPool == null;
+	}
+
+	/**
+	 * Commands waiting, either for their type to have a free slot or for a free platform thread
+	 * @return queued commands
+	 */
+	public int getQueuedCommands() {
+		return queued.get() + (platformPool != null ? platformPool.getQueue().size() + reservedPool.getQueue().size() : 0);
+	}
+
+	/**
+	 * Metrics of every command type run so far
+	 * @return command types
+	 */
+	public Collection<Lane> getLanes() {
+		List<Lane> result = new ArrayList<Lane>(lanes.values());
+		result.sort((a, b) -> a.type.compareTo(b.type));
+		return result;
+	}
+
+	/**
+	 * Commands of a single type: its concurrency limit, the commands waiting for a slot and its metrics
+	 */
+	public static class Lane {
+		private final String type;
+		private final int limit;
+		private final ExecutorService executor;
+		private final ArrayDeque<Task> waiting = new ArrayDeque<Task>();
+		private int running;
+		private final AtomicLong completed = new AtomicLong();
+		private final AtomicLong rejected = new AtomicLong();
+		private final AtomicLong totalWaitNanos = new AtomicLong();
+		private volatile long maxWaitNanos;
+
+		private Lane(String type, int limit, ExecutorService executor) {
+			this.type = type;
+			this.limit = limit;
+			this.executor = executor;
+		}
+
+		private void recordWait(long nanos) {
+			totalWaitNanos.addAndGet(nanos);
+			if (nanos > maxWaitNanos)
+				maxWaitNanos = nanos; // Racy, good enough for a metric
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public int getLimit() {
+			return limit;
+		}
+
+		public synchronized int getRunning() {
+			return running;
+		}
+
+		public synchronized int getQueued() {
+			return waiting.size();
+		}
+
+		public long getCompleted() {
+			return completed.get();
+		}
+
+		/**
+		 * Commands refused because the queue was full
+		 * @return rejected commands
+		 */
+		public long getRejected() {
+			return rejected.get();
+		}
+
+		/**
+		 * Average time from the command being received to it starting to run
+		 * @return wait in milliseconds
+		 */
+		public double getAverageWaitMillis() {
+			long count = completed.get();
+			return count == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / count;
+		}
+
+		public double getMaxWaitMillis() {
+			return maxWaitNanos / 1_000_000.0;
+		}
+	}
+
+	private class Task implements Runnable {
+		private final Lane lane;
+		private final Runnable task;
+		private final long submittedAt = System.nanoTime();
+
+		Task(Lane lane, Runnable task) {
+			this.lane = lane;
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			lane.recordWait(System.nanoTime() - submittedAt);
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				Bukkit.getLogger().log(Level.SEVERE, Internationalization.getPhrase("command-error-console", lane.type), e);
+			} finally {
+				lane.completed.incrementAndGet();
+				onFinished(lane);
+			}
+		}
+	}
+}
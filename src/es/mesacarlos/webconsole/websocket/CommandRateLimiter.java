@@ -0,0 +1,120 @@
+package es.mesacarlos.webconsole.websocket;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how fast a session can send each type of command, with a token bucket per command type and connection.
+ * A bucket holds one second worth of commands, so a client can send a short burst and then the configured rate.
+ * The limits are shared, every connection gets its own buckets from {@link #newSession()}.
+ */
+public class CommandRateLimiter {
+	private static final String DEFAULT_LIMIT = "DEFAULT";
+
+	private final Map<String, Integer> limits;
+	private final int defaultLimit;
+	private final ConcurrentHashMap<String, AtomicLong> throttled = new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * @param limits Commands of each type allowed per second. The DEFAULT key applies to unlisted types, 0 means no limit.
+	 */
+	public CommandRateLimiter(Map<String, Integer> limits) {
+		this.limits = new HashMap<String, Integer>(limits);
+		Integer fallback = this.limits.remove(DEFAULT_LIMIT);
+		this.defaultLimit = fallback != null ? fallback : 0;
+	}
+
+	/**
+	 * Creates the buckets of a new connection
+	 * @return rate limits of the session
+	 */
+	public Session newSession() {
+		return new Session();
+	}
+
+	/**
+	 * Commands allowed per second of a type
+	 * @param type Command name
+	 * @return rate, 0 if not limited
+	 */
+	public int getLimit(String type) {
+		Integer limit = limits.get(type);
+		return limit != null ? limit : defaultLimit;
+	}
+
+	/**
+	 * Commands throttled so far, by type, across all connections
+	 * @return command types with their throttled count
+	 */
+	public Collection<Map.Entry<String, AtomicLong>> getThrottled() {
+		List<Map.Entry<String, AtomicLong>> result = new ArrayList<Map.Entry<String, AtomicLong>>(throttled.entrySet());
+		result.sort((a, b) -> a.getKey().compareTo(b.getKey()));
+		return result;
+	}
+
+	/**
+	 * Token buckets of a single connection
+	 */
+	public class Session {
+		private final Map<String, Bucket> buckets = new HashMap<String, Bucket>();
+		private final AtomicLong throttledCommands = new AtomicLong();
+
+		private Session() {
+		}
+
+		/**
+		 * Takes a token for a command
+		 * @param type Command name
+		 * @return 0 if the command may run, otherwise milliseconds until it would be allowed
+		 */
+		public synchronized long tryAcquire(String type) {
+			int limit = getLimit(type);
+			if (limit <= 0)
+				return 0;
+			Bucket bucket = buckets.computeIfAbsent(type, k -> new Bucket(limit));
+			long wait = bucket.tryAcquire(System.nanoTime());
+			if (wait > 0) {
+				throttledCommands.incrementAndGet();
+				throttled.computeIfAbsent(type, k -> new AtomicLong()).incrementAndGet();
+			}
+			return wait;
+		}
+
+		/**
+		 * Commands of this connection refused for going over their rate
+		 * @return throttled commands
+		 */
+		public long getThrottledCommands() {
+			return throttledCommands.get();
+		}
+	}
+
+	private static class Bucket {
+		private final int capacity;
+		private final double tokensPerNano;
+		private double tokens;
+		private long refilledAt = System.nanoTime();
+
+		Bucket(int perSecond) {
+			this.capacity = perSecond;
+			this.tokensPerNano = perSecond / (double) TimeUnit.SECONDS.toNanos(1);
+			this.tokens = perSecond;
+		}
+
+		long tryAcquire(long now) {
+			tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+			refilledAt = now;
+			if (tokens >= 1) {
+				tokens--;
+				return 0;
+			}
+			return Math.max(1, TimeUnit.NANOSECONDS.toMillis((long) Math.ceil((1 - tokens) / tokensPerNano)));
+		}
+	}
+}
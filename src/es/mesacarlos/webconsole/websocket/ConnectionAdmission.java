@@ -0,0 +1,98 @@
+package es.mesacarlos.webconsole.websocket;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the open connections, in total and per IP address. Checked in the handshake, so refused clients never
+ * get a send queue nor a chance to send a request.
+ * Open connections are counted when they open, so handshakes running at the same time may overshoot a cap by a few.
+ */
+public class ConnectionAdmission {
+	private final int maxTotal;
+	private final int maxPerAddress;
+	private final AtomicInteger open = new AtomicInteger();
+	private final ConcurrentHashMap<InetAddress, AtomicInteger> openPerAddress = new ConcurrentHashMap<InetAddress, AtomicInteger>();
+	private final AtomicLong rejectedTotal = new AtomicLong();
+	private final AtomicLong rejectedPerAddress = new AtomicLong();
+
+	/**
+	 * @param maxTotal Maximum open connections, 0 for no limit
+	 * @param maxPerAddress Maximum open connections from a single IP address, 0 for no limit
+	 */
+	public ConnectionAdmission(int maxTotal, int maxPerAddress) {
+		this.maxTotal = maxTotal;
+		this.maxPerAddress = maxPerAddress;
+	}
+
+	/**
+	 * Check if a new connection from an address fits within the caps. Rejections are counted.
+	 * @param address Client address
+	 * @return null if it can be admitted, otherwise the reason it was refused
+	 */
+	public String admit(InetSocketAddress address) {
+		if (maxTotal > 0 && open.get() >= maxTotal) {
+			rejectedTotal.incrementAndGet();
+			return "Too many connections";
+		}
+		if (maxPerAddress > 0 && address != null && address.getAddress() != null) {
+			AtomicInteger fromAddress = openPerAddress.get(address.getAddress());
+			if (fromAddress != null && fromAddress.get() >= maxPerAddress) {
+				rejectedPerAddress.incrementAndGet();
+				return "Too many connections from this address";
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Counts a connection that completed its handshake
+	 * @param address Client address
+	 */
+	public void onOpen(InetSocketAddress address) {
+		open.incrementAndGet();
+		if (address != null && address.getAddress() != null)
+			openPerAddress.computeIfAbsent(address.getAddress(), k -> new AtomicInteger()).incrementAndGet();
+	}
+
+	/**
+	 * Stops counting a closed connection
+	 * @param address Client address
+	 */
+	public void onClose(InetSocketAddress address) {
+		open.decrementAndGet();
+		if (address != null && address.getAddress() != null)
+			openPerAddress.computeIfPresent(address.getAddress(), (k, count) -> count.decrementAndGet() <= 0 ? null : count);
+	}
+
+	public int getOpenConnections() {
+		return open.get();
+	}
+
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	public int getMaxPerAddress() {
+		return maxPerAddress;
+	}
+
+	/**
+	 * Handshakes refused because the server had the maximum connections open
+	 * @return rejected connections
+	 */
+	public long getRejectedTotal() {
+		return rejectedTotal.get();
+	}
+
+	/**
+	 * Handshakes refused because their address had the maximum connections open
+	 * @return rejected connections
+	 */
+	public long getRejectedPerAddress() {
+		return rejectedPerAddress.get();
+	}
+}
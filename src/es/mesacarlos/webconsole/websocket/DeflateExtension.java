@@ -0,0 +1,288 @@
+package es.mesacarlos.webconsole.websocket;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.extensions.CompressionExtension;
+import org.java_websocket.extensions.ExtensionRequestData;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.FramedataImpl1;
+
+/**
+ * permessage-deflate (RFC 7692) with a minimum message size, a configurable compression level and optional context takeover.
+ * It replaces Java-WebSocket's PerMessageDeflateExtension, which always compresses with the default level and resets the
+ * compressor after every message. It also counts the bytes before and after compression to measure the bandwidth saved.
+ * 
+ * Each connection gets its own instance through copyInstance(), and instances are only equal to themselves,
+ * so WebSocketServer.broadcast() never shares a frame (which this extension compresses in place) between two connections.
+ */
+public class DeflateExtension extends CompressionExtension {
+	private static final String EXTENSION_NAME = "permessage-deflate";
+	private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+	private static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+	private static final String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+	private static final byte[] TAIL = { 0x00, 0x00, (byte) 0xFF, (byte) 0xFF };
+	private static final int BUFFER_SIZE = 1024;
+
+	private static final AtomicLong totalBytesBefore = new AtomicLong();
+	private static final AtomicLong totalBytesAfter = new AtomicLong();
+
+	private final int minSize;
+	private final int level;
+	private final boolean contextTakeover;
+	private final int maxInflatedBytes;
+
+	private boolean serverNoContextTakeover = true;
+	private boolean clientNoContextTakeover;
+	private Deflater deflater;
+	private Inflater inflater;
+	private boolean deflatingMessage;
+	private boolean inflatingMessage;
+
+	private final AtomicLong bytesBefore = new AtomicLong();
+	private final AtomicLong bytesAfter = new AtomicLong();
+
+	/**
+	 * @param minSize Messages smaller than this, in bytes, are sent uncompressed
+	 * @param level Compression level, from 0 to 9
+	 * @param contextTakeover true to keep the compression dictionary between messages, if the client allows it
+	 * @param maxInflatedBytes Maximum size of a client message once decompressed
+	 */
+	public DeflateExtension(int minSize, int level, boolean contextTakeover, int maxInflatedBytes) {
+		this.minSize = Math.max(0, minSize);
+		this.level = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, level));
+		this.contextTakeover = contextTakeover;
+		this.maxInflatedBytes = maxInflatedBytes;
+	}
+
+	/**
+	 * Get the deflate extension negotiated by a connection
+	 * @param conn Connection
+	 * @return extension, or null if the connection does not use compression
+	 */
+	public static DeflateExtension of(WebSocket conn) {
+		Draft draft = conn.getDraft();
+		if (draft instanceof Draft_6455 && ((Draft_6455) draft).getExtension() instanceof DeflateExtension)
+			return (DeflateExtension) ((Draft_6455) draft).getExtension();
+		return null;
+	}
+
+	@Override
+	public synchronized void encodeFrame(Framedata frame) {
+		if (!(frame instanceof DataFrame))
+			return;
+
+		ByteBuffer payload = frame.getPayloadData();
+		int size = payload.remaining();
+		if (frame.getOpcode() != Opcode.CONTINUOUS)
+			deflatingMessage = size >= minSize; // Fragments follow the decision taken for the first frame
+		bytesBefore.addAndGet(size);
+		totalBytesBefore.addAndGet(size);
+		if (!deflatingMessage) {
+			bytesAfter.addAndGet(size);
+			totalBytesAfter.addAndGet(size);
+			return;
+		}
+
+		byte[] input = new byte[size];
+		payload.duplicate().get(input);
+		if (deflater == null)
+			deflater = new Deflater(level, true);
+		deflater.setInput(input);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, size / 2));
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int length;
+		do {
+			length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+			output.write(buffer, 0, length);
+		} while (length == buffer.length);
+
+		byte[] compressed = output.toByteArray();
+		int compressedLength = compressed.length;
+		if (frame.isFin()) {
+			if (endsWithTail(compressed))
+				compressedLength -= TAIL.length;
+			if (serverNoContextTakeover)
+				deflater.reset();
+		}
+
+		if (frame.getOpcode() != Opcode.CONTINUOUS)
+			((FramedataImpl1) frame).setRSV1(true);
+		((FramedataImpl1) frame).setPayload(ByteBuffer.wrap(compressed, 0, compressedLength));
+		bytesAfter.addAndGet(compressedLength);
+		totalBytesAfter.addAndGet(compressedLength);
+	}
+
+	@Override
+	public synchronized void decodeFrame(Framedata frame) throws InvalidDataException {
+		if (!(frame instanceof DataFrame))
+			return;
+		if (frame.getOpcode() != Opcode.CONTINUOUS)
+			inflatingMessage = frame.isRSV1();
+		if (!inflatingMessage)
+			return;
+
+		ByteBuffer payload = frame.getPayloadData();
+		byte[] input = new byte[payload.remaining()];
+		payload.duplicate().get(input);
+		if (inflater == null)
+			inflater = new Inflater(true);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream(input.length * 2);
+		try {
+			inflate(input, output);
+			if (frame.isFin()) {
+				inflate(TAIL, output);
+				if (clientNoContextTakeover)
+					inflater.reset();
+			}
+		} catch (DataFormatException e) {
+			throw new InvalidDataException(CloseFrame.POLICY_VALIDATION, e.getMessage());
+		}
+
+		((FramedataImpl1) frame).setRSV1(false);
+		((FramedataImpl1) frame).setPayload(ByteBuffer.wrap(output.toByteArray()));
+	}
+
+	private void inflate(byte[] input, ByteArrayOutputStream output) throws DataFormatException, InvalidDataException {
+		inflater.setInput(input);
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int length;
+		while ((length = inflater.inflate(buffer)) > 0) {
+			output.write(buffer, 0, length);
+			if (output.size() > maxInflatedBytes)
+				throw new InvalidDataException(CloseFrame.TOOBIG, "Decompressed message too big");
+		}
+	}
+
+	private static boolean endsWithTail(byte[] data) {
+		if (data.length < TAIL.length)
+			return false;
+		for (int i = 0; i < TAIL.length; i++)
+			if (data[data.length - TAIL.length + i] != TAIL[i])
+				return false;
+		return true;
+	}
+
+	@Override
+	public void isFrameValid(Framedata frame) throws InvalidDataException {
+		if (frame.getOpcode() == Opcode.CONTINUOUS && frame.isRSV1())
+			throw new InvalidDataException(CloseFrame.POLICY_VALIDATION, "RSV1 bit must not be set on continuation frames");
+		super.isFrameValid(frame);
+	}
+
+	@Override
+	public boolean acceptProvidedExtensionAsServer(String inputExtension) {
+		for (String offer : inputExtension.split(",")) {
+			ExtensionRequestData data = ExtensionRequestData.parseExtensionRequest(offer);
+			if (!EXTENSION_NAME.equalsIgnoreCase(data.getExtensionName()))
+				continue;
+			Map<String, String> params = data.getExtensionParameters();
+			String serverWindowBits = params.get(SERVER_MAX_WINDOW_BITS);
+			if (serverWindowBits != null && !"15".equals(serverWindowBits.trim()))
+				continue; // java.util.zip always uses a 15 bit window, try the next offer
+			serverNoContextTakeover = !contextTakeover || params.containsKey(SERVER_NO_CONTEXT_TAKEOVER);
+			clientNoContextTakeover = params.containsKey(CLIENT_NO_CONTEXT_TAKEOVER);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean acceptProvidedExtensionAsClient(String inputExtension) {
+		for (String offer : inputExtension.split(","))
+			if (EXTENSION_NAME.equalsIgnoreCase(ExtensionRequestData.parseExtensionRequest(offer).getExtensionName()))
+				return true;
+		return false;
+	}
+
+	@Override
+	public String getProvidedExtensionAsServer() {
+		return EXTENSION_NAME
+				+ (serverNoContextTakeover ? "; " + SERVER_NO_CONTEXT_TAKEOVER : "")
+				+ (clientNoContextTakeover ? "; " + CLIENT_NO_CONTEXT_TAKEOVER : "");
+	}
+
+	@Override
+	public String getProvidedExtensionAsClient() {
+		return EXTENSION_NAME;
+	}
+
+	@Override
+	public IExtension copyInstance() {
+		return new DeflateExtension(minSize, level, contextTakeover, maxInflatedBytes);
+	}
+
+	@Override
+	public synchronized void reset() {
+		if (deflater != null)
+			deflater.end();
+		if (inflater != null)
+			inflater.end();
+		deflater = null;
+		inflater = null;
+		deflatingMessage = false;
+		inflatingMessage = false;
+	}
+
+	/**
+	 * Payload bytes sent to this client, before compression
+	 * @return bytes
+	 */
+	public long getBytesBefore() {
+		return bytesBefore.get();
+	}
+
+	/**
+	 * Payload bytes sent to this client, after compression
+	 * @return bytes
+	 */
+	public long getBytesAfter() {
+		return bytesAfter.get();
+	}
+
+	/**
+	 * Payload bytes sent to all clients using compression, before compression
+	 * @return bytes
+	 */
+	public static long getTotalBytesBefore() {
+		return totalBytesBefore.get();
+	}
+
+	/**
+	 * Payload bytes sent to all clients using compression, after compression
+	 * @return bytes
+	 */
+	public static long getTotalBytesAfter() {
+		return totalBytesAfter.get();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return this == o;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this);
+	}
+
+	@Override
+	public String toString() {
+		return "DeflateExtension";
+	}
+}
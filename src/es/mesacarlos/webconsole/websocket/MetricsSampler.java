@@ -0,0 +1,175 @@
+package es.mesacarlos.webconsole.websocket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.bukkit.Bukkit;
+import org.java_websocket.WebSocket;
+
+import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.websocket.command.CpuUsageCommand;
+import es.mesacarlos.webconsole.websocket.command.PlayersCommand;
+import es.mesacarlos.webconsole.websocket.command.RamUsageCommand;
+import es.mesacarlos.webconsole.websocket.command.TpsCommand;
+import es.mesacarlos.webconsole.websocket.response.Metrics;
+import es.mesacarlos.webconsole.websocket.response.MetricsOutput;
+import es.mesacarlos.webconsole.websocket.response.Players;
+
+/**
+ * Pushes the server metrics to the clients subscribed with SUBSCRIBE_METRICS, so they do not need to poll
+ * PLAYERS, CPUUSAGE, RAMUSAGE and TPS. A single thread samples every metric once per subscribed interval,
+ * and the combined frame is encoded once and shared by all the subscribers of that interval.
+ */
+public class MetricsSampler {
+	private final WSServer wsServer;
+	private final long minIntervalMillis;
+	private final long maxIntervalMillis;
+	private final ScheduledThreadPoolExecutor scheduler;
+	private final Map<Long, Group> groups = new HashMap<Long, Group>();
+	private final Map<WebSocket, Group> subscriptions = new HashMap<WebSocket, Group>();
+	private final AtomicLong samples = new AtomicLong();
+	private volatile Players lastPlayers;
+	private CompletableFuture<Players> pendingPlayers; // Only used by the sampler thread
+
+	/**
+	 * @param wsServer Server sending the frames
+	 * @param minIntervalMillis Shortest interval a client can ask for
+	 * @param maxIntervalMillis Longest interval a client can ask for
+	 */
+	public MetricsSampler(WSServer wsServer, long minIntervalMillis, long maxIntervalMillis) {
+		this.wsServer = wsServer;
+		this.minIntervalMillis = minIntervalMillis;
+		this.maxIntervalMillis = Math.max(minIntervalMillis, maxIntervalMillis);
+		this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "WebConsole Metrics Sampler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Applies the server limits to the interval asked by a client. It is rounded up to a multiple of the minimum
+	 * interval, so clients asking for similar intervals share the same frames.
+	 * @param intervalMillis Requested interval
+	 * @return interval the metrics will be sent at
+	 */
+	public long normalizeInterval(long intervalMillis) {
+		long rounded = (Math.min(intervalMillis, maxIntervalMillis) + minIntervalMillis - 1) / minIntervalMillis * minIntervalMillis;
+		return Math.max(minIntervalMillis, Math.min(maxIntervalMillis, rounded));
+	}
+
+	/**
+	 * Sends the metrics to a connection every interval, replacing its previous subscription
+	 * @param conn Connection
+	 * @param intervalMillis Interval, already normalized
+	 */
+	public synchronized void subscribe(WebSocket conn, long intervalMillis) {
+		unsubscribe(conn);
+		Group group = groups.get(intervalMillis);
+		if (group == null) {
+			group = new Group(intervalMillis);
+			groups.put(intervalMillis, group);
+			group.start();
+		}
+		group.subscribers.add(conn);
+		subscriptions.put(conn, group);
+	}
+
+	/**
+	 * Stops sending metrics to a connection. The sampling of an interval stops with its last subscriber.
+	 * @param conn Connection
+	 */
+	public synchronized void unsubscribe(WebSocket conn) {
+		Group group = subscriptions.remove(conn);
+		if (group == null)
+			return;
+		group.subscribers.remove(conn);
+		if (group.subscribers.isEmpty()) {
+			group.task.cancel(false);
+			groups.remove(group.intervalMillis);
+		}
+	}
+
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Connections receiving metrics
+	 * @return subscribers across all intervals
+	 */
+	public synchronized int getSubscribers() {
+		return subscriptions.size();
+	}
+
+	/**
+	 * Combined frames built so far
+	 * @return samples taken
+	 */
+	public long getSamples() {
+		return samples.get();
+	}
+
+	private void sample(Group group) {
+		List<WebSocket> receivers = new ArrayList<WebSocket>(group.subscribers);
+		if (receivers.isEmpty())
+			return;
+
+		// An exception would cancel the periodic task, so failures only skip this sample
+		try {
+			List<MetricsOutput> metrics = new ArrayList<MetricsOutput>(4);
+			Players players = samplePlayers();
+			if (players != null)
+				metrics.add(players);
+			metrics.add(CpuUsageCommand.sample());
+			metrics.add(RamUsageCommand.sample());
+			metrics.add(TpsCommand.sample());
+			samples.incrementAndGet();
+			wsServer.sendMetrics(new Metrics(Internationalization.getPhrase("metrics-message", group.intervalMillis),
+					group.intervalMillis, metrics), receivers);
+		} catch (Exception e) {
+			Bukkit.getLogger().log(Level.WARNING, Internationalization.getPhrase("metrics-sample-error"), e);
+		}
+	}
+
+	/**
+	 * Get the player list, which is read on the main thread. The sampler never waits for it, so a stalled server
+	 * cannot delay any interval: the last list read is sent, and a new read is requested unless one is still pending.
+	 * @return players, or null if they were never read
+	 */
+	private Players samplePlayers() {
+		if (pendingPlayers == null || pendingPlayers.isDone()) {
+			pendingPlayers = PlayersCommand.sample();
+			pendingPlayers.whenComplete((players, error) -> {
+				if (players != null)
+					lastPlayers = players;
+			});
+		}
+		return lastPlayers;
+	}
+
+	private class Group {
+		private final long intervalMillis;
+		private final Set<WebSocket> subscribers = ConcurrentHashMap.newKeySet();
+		private ScheduledFuture<?> task;
+
+		private Group(long intervalMillis) {
+			this.intervalMillis = intervalMillis;
+		}
+
+		private void start() {
+			task = scheduler.scheduleAtFixedRate(() -> sample(this), 0, intervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+}
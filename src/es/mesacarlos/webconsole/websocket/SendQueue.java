@@ -0,0 +1,248 @@
+package es.mesacarlos.webconsole.websocket;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+
+import es.mesacarlos.webconsole.console.ConsoleFilter;
+import es.mesacarlos.webconsole.console.ConsoleLine;
+
+/**
+ * Outbound state of a single connection.
+ * It measures the data Java-WebSocket still has to write to the socket, and holds the console lines
+ * coalesced while the client is over its budget.
+ */
+public class SendQueue {
+	private static final AtomicLong globalBufferedBytes = new AtomicLong();
+
+	private final WebSocket conn;
+	private final boolean binary;
+	private final List<ConsoleLine> pendingLines = new ArrayList<ConsoleLine>();
+	private long pendingBytes;
+	private long bufferedBytes;
+	private final AtomicLong droppedFrames = new AtomicLong();
+	private final AtomicLong droppedLines = new AtomicLong();
+	private final AtomicLong coalescedLines = new AtomicLong();
+	private final AtomicInteger inFlightRequests = new AtomicInteger();
+	private volatile ConsoleFilter consoleFilter;
+	private final InetSocketAddress address;
+	private final CommandRateLimiter.Session rateLimits;
+
+	/**
+	 * @param conn Connection
+	 * @param binary true if the client negotiated the binary subprotocol
+	 * @param rateLimits Command rate limits of this connection
+	 */
+	public SendQueue(WebSocket conn, boolean binary, CommandRateLimiter.Session rateLimits) {
+		this.conn = conn;
+		this.binary = binary;
+		this.address = conn.getRemoteSocketAddress();
+		this.rateLimits = rateLimits;
+	}
+
+	public WebSocket getConnection() {
+		return conn;
+	}
+
+	/**
+	 * Address of the client, as it was when the connection opened
+	 * @return remote address
+	 */
+	public InetSocketAddress getAddress() {
+		return address;
+	}
+
+	/**
+	 * Token buckets limiting how fast this connection sends each command type
+	 * @return rate limits of the session
+	 */
+	public CommandRateLimiter.Session getRateLimits() {
+		return rateLimits;
+	}
+
+	/**
+	 * Check if this client receives responses with the binary encoding instead of JSON
+	 * @return true if binary
+	 */
+	public boolean isBinary() {
+		return binary;
+	}
+
+	/**
+	 * Console lines this client subscribed to
+	 * @return filter, or null to receive every line
+	 */
+	public ConsoleFilter getConsoleFilter() {
+		return consoleFilter;
+	}
+
+	public void setConsoleFilter(ConsoleFilter consoleFilter) {
+		this.consoleFilter = consoleFilter;
+	}
+
+	/**
+	 * Frames waiting to be written to the socket
+	 * @return buffered frames
+	 */
+	public int getBufferedFrames() {
+		return ((WebSocketImpl) conn).outQueue.size();
+	}
+
+	/**
+	 * Measures the bytes waiting to be written to the socket, updating the global counter
+	 * @return buffered bytes
+	 */
+	public synchronized long measureBufferedBytes() {
+		long bytes = 0;
+		if (conn.hasBufferedData())
+			for (ByteBuffer buffer : ((WebSocketImpl) conn).outQueue)
+				bytes += buffer.remaining();
+		globalBufferedBytes.addAndGet(bytes - bufferedBytes);
+		bufferedBytes = bytes;
+		return bytes;
+	}
+
+	/**
+	 * Bytes waiting to be written to the socket, as of the last measure
+	 * @return buffered bytes
+	 */
+	public synchronized long getBufferedBytes() {
+		return bufferedBytes;
+	}
+
+	/**
+	 * Check if this connection exceeds its own budget, or holds data while the global cap is exceeded
+	 * @param maxBytes Maximum buffered bytes for this connection
+	 * @param maxFrames Maximum buffered frames for this connection
+	 * @param globalMaxBytes Maximum buffered bytes across all connections
+	 * @return true if no more unsolicited traffic should be sent now
+	 */
+	public boolean isOverBudget(long maxBytes, int maxFrames, long globalMaxBytes) {
+		// Always measured, so a drained connection gives back its share of the global counter
+		long bytes = measureBufferedBytes();
+		if (bytes == 0)
+			return false;
+		if (getBufferedFrames() > maxFrames)
+			return true;
+		return bytes > maxBytes || globalBufferedBytes.get() > globalMaxBytes;
+	}
+
+	/**
+	 * Holds a console line until the client catches up. The oldest lines are dropped to stay within the byte budget.
+	 * @param line Console line
+	 * @param maxBytes Maximum size of the held lines
+	 */
+	public synchronized void coalesce(ConsoleLine line, long maxBytes) {
+		pendingLines.add(line);
+		pendingBytes += line.getMessage().length();
+		coalescedLines.incrementAndGet();
+		while (pendingBytes > maxBytes && pendingLines.size() > 1) {
+			pendingBytes -= pendingLines.remove(0).getMessage().length();
+			droppedLines.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Takes all held console lines
+	 * @return held lines, oldest first. Empty if there are none.
+	 */
+	public synchronized List<ConsoleLine> takePendingLines() {
+		if (pendingLines.isEmpty())
+			return new ArrayList<ConsoleLine>();
+		List<ConsoleLine> lines = new ArrayList<ConsoleLine>(pendingLines);
+		pendingLines.clear();
+		pendingBytes = 0;
+		return lines;
+	}
+
+	public synchronized boolean hasPendingLines() {
+		return !pendingLines.isEmpty();
+	}
+
+	public synchronized int getPendingLines() {
+		return pendingLines.size();
+	}
+
+	/**
+	 * Counts a command about to run on a worker, unless the connection already has the maximum running
+	 * @param max Maximum commands in flight for this connection
+	 * @return true if the command can run, false if it must be rejected
+	 */
+	public boolean tryBeginRequest(int max) {
+		while (true) {
+			int current = inFlightRequests.get();
+			if (current >= max)
+				return false;
+			if (inFlightRequests.compareAndSet(current, current + 1))
+				return true;
+		}
+	}
+
+	public void endRequest() {
+		inFlightRequests.decrementAndGet();
+	}
+
+	/**
+	 * Commands of this connection currently queued or running
+	 * @return in-flight commands
+	 */
+	public int getInFlightRequests() {
+		return inFlightRequests.get();
+	}
+
+	public void onFrameDropped() {
+		droppedFrames.incrementAndGet();
+	}
+
+	public void onLineDropped() {
+		droppedLines.incrementAndGet();
+	}
+
+	/**
+	 * Metrics frames dropped because this client was over budget
+	 * @return dropped frames
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames.get();
+	}
+
+	/**
+	 * Console lines that never reached this client
+	 * @return dropped lines
+	 */
+	public long getDroppedLines() {
+		return droppedLines.get();
+	}
+
+	/**
+	 * Console lines that were held back and sent later in a batch
+	 * @return coalesced lines
+	 */
+	public long getCoalescedLines() {
+		return coalescedLines.get();
+	}
+
+	/**
+	 * Releases this connection share of the global buffered bytes counter. Called when the connection is closed.
+	 */
+	public synchronized void release() {
+		globalBufferedBytes.addAndGet(-bufferedBytes);
+		bufferedBytes = 0;
+		pendingLines.clear();
+		pendingBytes = 0;
+	}
+
+	/**
+	 * Bytes waiting to be written across all connections, as of the last measure of each one
+	 * @return buffered bytes
+	 */
+	public static long getGlobalBufferedBytes() {
+		return globalBufferedBytes.get();
+	}
+}
@@ -0,0 +1,25 @@
+package es.mesacarlos.webconsole.websocket;
+
+/**
+ * What to do with unsolicited traffic (console lines and metrics) for a client whose outbound budget is exhausted
+ */
+public enum SlowConsumerPolicy {
+	/** Hold console lines and send them as a single CONSOLE_BATCH frame once the client catches up. Metrics frames are dropped. */
+	COALESCE,
+	/** Drop console lines and metrics frames until the client catches up. */
+	DROP,
+	/** Close the connection with the configured close code. */
+	DISCONNECT;
+
+	/**
+	 * Parse a policy name from config.yml
+	 * @param name Policy name, case insensitive
+	 * @return matching policy, COALESCE if the name is not valid
+	 */
+	public static SlowConsumerPolicy fromString(String name) {
+		for (SlowConsumerPolicy policy : values())
+			if (policy.name().equalsIgnoreCase(name))
+				return policy;
+		return COALESCE;
+	}
+}
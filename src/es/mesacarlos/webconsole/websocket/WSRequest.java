@@ -0,0 +1,195 @@
+package es.mesacarlos.webconsole.websocket;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import es.mesacarlos.webconsole.util.JsonUtils;
+
+/**
+ * A message sent by a client, parsed once with a streaming reader:
+ * {"command": "EXEC", "token": "...", "params": "say hi", "id": "42"}
+ * 
+ * params can be a string, as sent by the web interface, or a JSON object, which commands read
+ * without parsing it again. Object params sent as a string are parsed at most once, when first requested.
+ */
+public class WSRequest {
+	public final static String ID_PROPERTY = "id";
+
+	private final String message;
+	private final String command;
+	private final String token;
+	private final String id;
+	private String params;
+	private JsonObject paramsObject;
+	private boolean paramsObjectParsed;
+
+	private WSRequest(String message, String command, String token, String id, String params, JsonObject paramsObject) {
+		this.message = message;
+		this.command = command;
+		this.token = token;
+		this.id = id;
+		this.params = params;
+		this.paramsObject = paramsObject;
+		this.paramsObjectParsed = paramsObject != null;
+	}
+
+	/**
+	 * Parses a client message in a single pass
+	 * @param message Message received from the client
+	 * @return parsed request, or null if the message is not a JSON object with a string command
+	 */
+	public static WSRequest parse(String message) {
+		String command = null;
+		String token = null;
+		String id = null;
+		String params = null;
+		JsonObject paramsObject = null;
+
+		try (JsonReader reader = new JsonReader(new StringReader(message))) {
+			reader.setLenient(true);
+			if (reader.peek() != JsonToken.BEGIN_OBJECT)
+				return null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (name.equals(JsonUtils.COMMAND_PROPERTY)) {
+					command = readString(reader);
+				} else if (name.equals(JsonUtils.TOKEN_PROPERTY)) {
+					token = readString(reader);
+				} else if (name.equals(ID_PROPERTY)) {
+					id = readString(reader);
+				} else if (name.equals(JsonUtils.PARAMS_PROPERTY)) {
+					if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+						paramsObject = JsonParser.parseReader(reader).getAsJsonObject();
+					} else {
+						params = readString(reader);
+					}
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		} catch (IOException | RuntimeException e) {
+			return null; // Not valid JSON
+		}
+
+		if (command == null)
+			return null;
+		return new WSRequest(message, command, token, id, params, paramsObject);
+	}
+
+	/**
+	 * Reads a string, number or boolean value as a String
+	 * @param reader Reader positioned at the value
+	 * @return the value, or null if it is null, an object or an array
+	 */
+	private static String readString(JsonReader reader) throws IOException {
+		switch (reader.peek()) {
+		case STRING:
+		case NUMBER:
+			return reader.nextString();
+		case BOOLEAN:
+			return String.valueOf(reader.nextBoolean());
+		default:
+			reader.skipValue();
+			return null;
+		}
+	}
+
+	/**
+	 * Full message as received, used for logging and error responses
+	 * @return raw message
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	public String getCommand() {
+		return command;
+	}
+
+	public boolean hasToken() {
+		return token != null;
+	}
+
+	/**
+	 * Session token sent with the request
+	 * @return token, or an empty string if not sent
+	 */
+	public String getToken() {
+		return token == null ? "" : token;
+	}
+
+	/**
+	 * Identifier chosen by the client for this request
+	 * @return id, or null if not sent
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Params as text. If params were sent as a JSON object, this is its JSON representation.
+	 * @return params, or an empty string if not sent
+	 */
+	public String getParams() {
+		if (params == null)
+			params = paramsObject != null ? paramsObject.toString() : "";
+		return params;
+	}
+
+	/**
+	 * Params as a JSON object, parsed at most once
+	 * @return params object, or null if params are not a JSON object
+	 */
+	public JsonObject getParamsObject() {
+		if (!paramsObjectParsed) {
+			paramsObjectParsed = true;
+			String text = getParams().trim();
+			if (text.startsWith("{")) {
+				try {
+					JsonElement element = JsonParser.parseString(text);
+					if (element.isJsonObject())
+						paramsObject = element.getAsJsonObject();
+				} catch (RuntimeException e) {
+					// Not a JSON object, keep null
+				}
+			}
+		}
+		return paramsObject;
+	}
+
+	/**
+	 * Get a string property of the params object
+	 * @param property Property name
+	 * @return the value, or null if params are not an object or the property is missing or not a primitive
+	 */
+	public String getParamString(String property) {
+		JsonObject object = getParamsObject();
+		if (object == null)
+			return null;
+		JsonElement element = object.get(property);
+		if (element == null || !element.isJsonPrimitive())
+			return null;
+		return element.getAsString();
+	}
+
+	/**
+	 * Get a boolean property of the params object
+	 * @param property Property name
+	 * @return the value, or false if params are not an object or the property is missing or not a boolean
+	 */
+	public boolean getParamBoolean(String property) {
+		JsonObject object = getParamsObject();
+		if (object == null)
+			return false;
+		JsonElement element = object.get(property);
+		return element != null && element.isJsonPrimitive() && element.getAsJsonPrimitive().isBoolean() && element.getAsBoolean();
+	}
+}
@@ -1,39 +1,176 @@
 package es.mesacarlos.webconsole.websocket;
 
+import java.io.UnsupportedEncodingException;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bukkit.Bukkit;
 import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
+import org.java_websocket.exceptions.InvalidDataException;
 import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.TextFrame;
 import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.handshake.ServerHandshakeBuilder;
 import org.java_websocket.server.WebSocketServer;
 
+import es.mesacarlos.webconsole.auth.ConnectedUser;
 import es.mesacarlos.webconsole.auth.LoginManager;
+import es.mesacarlos.webconsole.auth.LoginThrottle;
+import es.mesacarlos.webconsole.auth.ResumeToken;
+import es.mesacarlos.webconsole.config.ConfigManager;
+import es.mesacarlos.webconsole.config.UserData;
+import es.mesacarlos.webconsole.console.ConsoleFilter;
+import es.mesacarlos.webconsole.console.ConsoleLine;
 import es.mesacarlos.webconsole.util.DateTimeUtils;
 import es.mesacarlos.webconsole.util.Internationalization;
-import es.mesacarlos.webconsole.util.JsonUtils;
+import es.mesacarlos.webconsole.websocket.command.ConsoleResumeCommand;
 import es.mesacarlos.webconsole.websocket.command.WSCommandFactory;
 import es.mesacarlos.webconsole.websocket.command.WSCommand;
+import es.mesacarlos.webconsole.websocket.response.BinaryOutput;
+import es.mesacarlos.webconsole.websocket.response.ConsoleBatch;
 import es.mesacarlos.webconsole.websocket.response.ConsoleOutput;
+import es.mesacarlos.webconsole.websocket.response.ConsoleResume;
 import es.mesacarlos.webconsole.websocket.response.JSONOutput;
 import es.mesacarlos.webconsole.websocket.response.LoginRequired;
 import es.mesacarlos.webconsole.websocket.response.LoggedIn;
+import es.mesacarlos.webconsole.websocket.response.MetricsOutput;
+import es.mesacarlos.webconsole.websocket.response.ResponseWriter;
+import es.mesacarlos.webconsole.websocket.response.TooManyRequests;
 import es.mesacarlos.webconsole.websocket.response.UnknownCommand;
 
 public class WSServer extends WebSocketServer {
+	private static final int LOGIN_QUEUE_SIZE = 64;
+	private static final String RESUME_HEADER = "X-WebConsole-Resume";
+	private static final String RESUME_PARAMETER = "resume";
+	private static final String SINCE_PARAMETER = "since";
 
 	private final HashMap<String, WSCommand> commands = WSCommandFactory.getCommandsHashMap();
+	private final ConcurrentHashMap<WebSocket, SendQueue> sendQueues = new ConcurrentHashMap<WebSocket, SendQueue>();
+	private final ConcurrentHashMap<ConsoleFilter, ConsoleFilter> consoleFilters = new ConcurrentHashMap<ConsoleFilter, ConsoleFilter>();
+	private final long maxBufferedBytes;
+	private final int maxBufferedFrames;
+	private final long globalMaxBufferedBytes;
+	private final SlowConsumerPolicy slowConsumerPolicy;
+	private final int slowConsumerCloseCode;
+	private final int maxRequestSize;
+	private final int maxInFlightRequests;
+	private final CommandExecutor commandExecutor;
+	private final ThreadPoolExecutor loginExecutor;
+	private final LoginThrottle loginThrottle;
+	private final ResumeToken resumeTokens;
+	private final ConnectionAdmission connectionAdmission;
+	private final CommandRateLimiter commandRateLimiter;
+	private final MetricsSampler metricsSampler;
 
 	public WSServer(InetSocketAddress address) {
-		super(address);
+		super(address, createDrafts());
 		setReuseAddr(true);
+		
+		ConfigManager config = ConfigManager.getInstance();
+		maxBufferedBytes = config.getMaxBufferedBytes();
+		maxBufferedFrames = config.getMaxBufferedFrames();
+		globalMaxBufferedBytes = config.getGlobalMaxBufferedBytes();
+		slowConsumerPolicy = SlowConsumerPolicy.fromString(config.getSlowConsumerPolicy());
+		slowConsumerCloseCode = config.getSlowConsumerCloseCode();
+		maxRequestSize = config.getMaxRequestSize();
+		maxInFlightRequests = config.getMaxInFlightRequests();
+		commandExecutor = new CommandExecutor(config.getRequestWorkerThreads(), config.isRequestVirtualThreads(),
+				config.getRequestQueueSize(), config.getCommandConcurrencyLimits());
+		loginExecutor = createLoginExecutor(config.getLoginVerifierThreads());
+		loginThrottle = new LoginThrottle(config.getLoginAttemptsPerMinute(), config.getLoginAttemptsBurst(),
+				config.getLoginFailuresBeforeLockout(), config.getLoginLockoutSeconds(), config.getLoginMaxLockoutSeconds());
+		resumeTokens = config.getResumeTokenMinutes() > 0 ? new ResumeToken(config.getResumeTokenMinutes()) : null;
+		connectionAdmission = new ConnectionAdmission(config.getMaxConnections(), config.getMaxConnectionsPerAddress());
+		commandRateLimiter = new CommandRateLimiter(config.getCommandRateLimits());
+		metricsSampler = new MetricsSampler(this, config.getMetricsMinIntervalMillis(), config.getMetricsMaxIntervalMillis());
+	}
+	
+	/**
+	 * Builds the pool checking login passwords. Hashing is slow on purpose, so it never runs on the WebSocket threads,
+	 * and its queue is bounded so a burst of logins cannot pile up work.
+	 * @param threads Verifier threads
+	 * @return login executor
+	 */
+	private static ThreadPoolExecutor createLoginExecutor(int threads) {
+		AtomicInteger count = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(LOGIN_QUEUE_SIZE), runnable -> {
+			Thread t = new Thread(runnable, "WebConsole-Login-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Builds the drafts offered to clients, with permessage-deflate if it is enabled in config.
+	 * Clients asking for the binary subprotocol get it, the rest keep using JSON.
+	 * @return list of drafts
+	 */
+	private static List<Draft> createDrafts() {
+		ConfigManager config = ConfigManager.getInstance();
+		List<IExtension> extensions = new ArrayList<IExtension>();
+		if (config.isCompressionEnabled())
+			extensions.add(new DeflateExtension(config.getCompressionMinSize(), config.getCompressionLevel(), config.isCompressionContextTakeover(),
+					config.getMaxRequestSize()));
+		List<IProtocol> protocols = new ArrayList<IProtocol>();
+		protocols.add(new Protocol(BinaryOutput.PROTOCOL));
+		protocols.add(new Protocol("")); // Any other client, JSON mode
+		// Frames bigger than the request limit are rejected before being buffered
+		return Collections.<Draft>singletonList(new Draft_6455(extensions, protocols, config.getMaxRequestSize()));
+	}
+	
+	/**
+	 * Check if a connection negotiated the binary subprotocol during the handshake
+	 * @param conn Connection
+	 * @return true if responses must be sent with the binary encoding
+	 */
+	private static boolean negotiatedBinary(WebSocket conn) {
+		Draft draft = conn.getDraft();
+		return draft instanceof Draft_6455 && ((Draft_6455) draft).getProtocol() != null
+				&& BinaryOutput.PROTOCOL.equals(((Draft_6455) draft).getProtocol().getProvidedProtocol());
+	}
+
+	@Override
+	public ServerHandshakeBuilder onWebsocketHandshakeReceivedAsServer(WebSocket conn, Draft draft, ClientHandshake request) throws InvalidDataException {
+		// Refuse addresses locked out for failing to log in before reading any request
+		if (loginThrottle.isLockedOut(conn.getRemoteSocketAddress()))
+			throw new InvalidDataException(CloseFrame.POLICY_VALIDATION, "Too many failed logins");
+		String refused = connectionAdmission.admit(conn.getRemoteSocketAddress());
+		if (refused != null)
+			throw new InvalidDataException(CloseFrame.TRY_AGAIN_LATER, refused);
+		return super.onWebsocketHandshakeReceivedAsServer(conn, draft, request);
 	}
 
 	@Override
 	public void onOpen(WebSocket conn, ClientHandshake handshake) {
-		if (LoginManager.getInstance().isSocketConnected(conn.getRemoteSocketAddress())) {
+		SendQueue opened = new SendQueue(conn, negotiatedBinary(conn), commandRateLimiter.newSession());
+		sendQueues.put(conn, opened);
+		connectionAdmission.onOpen(opened.getAddress());
+		if (resumeWithToken(conn, handshake)) {
+			Bukkit.getLogger().info(Internationalization.getPhrase("connection-resumed-console", conn.getRemoteSocketAddress()));
+		} else if (LoginManager.getInstance().resume(conn) != null) {
 			sendToClient(conn, new LoggedIn(Internationalization.getPhrase("connection-resumed-message")));
 			Bukkit.getLogger().info(Internationalization.getPhrase("connection-resumed-console", conn.getRemoteSocketAddress()));
 		} else {
@@ -42,38 +179,247 @@ public class WSServer extends WebSocketServer {
 		}
 	}
 
+	/**
+	 * Restores the session of a reconnecting client from the resume token sent in the handshake, as the
+	 * X-WebConsole-Resume header or the resume query parameter. If the query also has since=lastSeq,
+	 * the console lines missed meanwhile follow the LoggedIn response, so no log replay is needed.
+	 * @param conn New connection
+	 * @param handshake Client handshake
+	 * @return true if the session was restored
+	 */
+	private boolean resumeWithToken(WebSocket conn, ClientHandshake handshake) {
+		if (resumeTokens == null)
+			return false;
+		String token = handshake.getFieldValue(RESUME_HEADER);
+		if (token.isEmpty())
+			token = getQueryParameter(handshake.getResourceDescriptor(), RESUME_PARAMETER);
+		if (token == null || token.isEmpty())
+			return false;
+		
+		ResumeToken.Claims claims = resumeTokens.parse(token);
+		if (claims == null) {
+			loginThrottle.onFailure(conn.getRemoteSocketAddress()); // Forged token
+			Bukkit.getLogger().warning(Internationalization.getPhrase("resume-invalid-console", conn.getRemoteSocketAddress()));
+			return false;
+		}
+		UserData ud = ConfigManager.getInstance().getUserRegistry().getUser(claims.getUsername());
+		if (claims.isExpired() || ud == null || !claims.matchesPassword(ud.getPassword()))
+			return false; // Client falls back to LOGIN
+		
+		ConnectedUser user = new ConnectedUser(conn.getRemoteSocketAddress(), ud.getUsername(), UUID.randomUUID().toString(), ud.getUserType(), claims.isConsoleBatching());
+		LoginManager.getInstance().logIn(conn, user);
+		sendToClient(conn, new LoggedIn(Internationalization.getPhrase("connection-resumed-message"), "RESUME", user.getUsername(), user.getUserType(),
+				user.getToken(), user.isConsoleBatching(), issueResumeToken(user)));
+		
+		String since = getQueryParameter(handshake.getResourceDescriptor(), SINCE_PARAMETER);
+		if (since != null) {
+			try {
+				ConsoleResume missed = ConsoleResumeCommand.missedLines(this, conn, Long.parseLong(since));
+				if (!missed.getLines().isEmpty() || missed.isTruncated() || missed.hasMore())
+					sendToClient(conn, missed);
+			} catch (NumberFormatException e) {
+				// Ignore, the client can still send CONSOLE_RESUME
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Issues a token the client of a session can use to restore it after reconnecting
+	 * @param user Logged in user
+	 * @return resume token, null if disabled in config or the user no longer exists
+	 */
+	public String issueResumeToken(ConnectedUser user) {
+		UserData ud = ConfigManager.getInstance().getUserRegistry().getUser(user.getUsername());
+		return resumeTokens == null || ud == null ? null : resumeTokens.issue(user, ud.getPassword());
+	}
+	
+	/**
+	 * Reads a parameter from the query of a handshake URI, like /?resume=token&since=42
+	 * @param resourceDescriptor Path and query requested by the client
+	 * @param name Parameter name
+	 * @return decoded value, null if missing
+	 */
+	private static String getQueryParameter(String resourceDescriptor, String name) {
+		int query = resourceDescriptor.indexOf('?');
+		if (query < 0)
+			return null;
+		for (String pair : resourceDescriptor.substring(query + 1).split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0 && pair.substring(0, equals).equals(name)) {
+				try {
+					return URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+				} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+					return null;
+				}
+			}
+		}
+		return null;
+	}
+
 	@Override
 	public void onMessage(WebSocket conn, String message) {
-		if(!JsonUtils.containsStringProperty(message, "command") //Contains a command
-				|| ( !JsonUtils.containsStringProperty(message, "token") && !JsonUtils.getStringProperty(message, JsonUtils.COMMAND_PROPERTY).equals("LOGIN")) //Contains a token or it is a login command
+		if (message.length() > maxRequestSize) {
+			Bukkit.getLogger().warning(Internationalization.getPhrase("request-too-large", conn.getRemoteSocketAddress(), message.length()));
+			conn.close(CloseFrame.TOOBIG, "Request too large");
+			return;
+		}
+		
+		// Parse the whole message once
+		WSRequest request = WSRequest.parse(message);
+		if(request == null //Contains a command
+				|| ( !request.hasToken() && !request.getCommand().equals("LOGIN")) //Contains a token or it is a login command
 			)
 			return;
 		
 		// Get command and params
-		String wsCommand = JsonUtils.getStringProperty(message, JsonUtils.COMMAND_PROPERTY);
-		String wsToken = JsonUtils.getStringProperty(message, JsonUtils.TOKEN_PROPERTY);
-		String wsCommandParams = JsonUtils.getStringProperty(message, JsonUtils.PARAMS_PROPERTY);
+		String wsCommand = request.getCommand();
+		String wsToken = request.getToken();
 
 		// Run command
 		WSCommand cmd = commands.get(wsCommand);
 
 		if (cmd == null) {
 			// Command does not exist
-			sendToClient(conn, new UnknownCommand(Internationalization.getPhrase("unknown-command-message"), message));
+			sendToClient(conn, request, new UnknownCommand(Internationalization.getPhrase("unknown-command-message"), message));
 			Bukkit.getLogger().info(Internationalization.getPhrase("unknown-command-console", message));
 		} else if (!wsCommand.equals("LOGIN")
-				&& !LoginManager.getInstance().isLoggedIn(conn.getRemoteSocketAddress(), wsToken)) {
+				&& !LoginManager.getInstance().isLoggedIn(conn, wsToken)) {
 			// User is not authorised. DO NOTHING, IMPORTANT!
-			sendToClient(conn, new LoginRequired(Internationalization.getPhrase("forbidden-message")));
+			sendToClient(conn, request, new LoginRequired(Internationalization.getPhrase("forbidden-message")));
 			Bukkit.getLogger().warning(Internationalization.getPhrase("forbidden-console", conn.getRemoteSocketAddress(), message));
+		} else if (!wsCommand.equals("LOGIN") && isRateLimited(conn, request)) {
+			// Answered with 429, LOGIN has its own per address limits
 		} else {
-			cmd.execute(this, conn, wsCommandParams);
+			dispatch(cmd, conn, request);
+		}
+	}
+	
+	/**
+	 * Takes a token from the bucket of the command type for this connection, answering 429 if it is empty
+	 * @param conn Connection that sent the request
+	 * @param request Request
+	 * @return true if the command must not run
+	 */
+	private boolean isRateLimited(WebSocket conn, WSRequest request) {
+		SendQueue queue = sendQueues.get(conn);
+		if (queue == null)
+			return true; // Already closed
+		long retryAfter = queue.getRateLimits().tryAcquire(request.getCommand());
+		if (retryAfter == 0)
+			return false;
+		sendToClient(conn, request, new TooManyRequests(Internationalization.getPhrase("rate-limited-message", request.getCommand(),
+				commandRateLimiter.getLimit(request.getCommand())), request.getCommand(), retryAfter));
+		return true;
+	}
+	
+	/**
+	 * Runs a command. Inline commands run right away, the rest run on the command executor, so a connection can have
+	 * several commands in flight and receive each response, tagged with its request id, as soon as it is ready.
+	 * Nothing that may block runs on the WebSocket threads, which keeps the console streaming to every other client.
+	 * @param cmd Command
+	 * @param conn Connection that sent the request
+	 * @param request Request
+	 */
+	private void dispatch(WSCommand cmd, WebSocket conn, WSRequest request) {
+		if (cmd.isInline()) {
+			cmd.execute(this, conn, request);
+			return;
+		}
+		
+		SendQueue queue = sendQueues.get(conn);
+		if (queue == null)
+			return; // Already closed
+		if (!queue.tryBeginRequest(maxInFlightRequests)) {
+			sendToClient(conn, request, new TooManyRequests(Internationalization.getPhrase("too-many-requests-message", maxInFlightRequests), request.getCommand()));
+			return;
+		}
+		
+		boolean accepted = commandExecutor.submit(request.getCommand(), () -> {
+			try {
+				cmd.execute(this, conn, request);
+			} finally {
+				queue.endRequest();
+			}
+		});
+		if (!accepted) {
+			queue.endRequest();
+			sendToClient(conn, request, new TooManyRequests(Internationalization.getPhrase("server-busy-message"), request.getCommand()));
+		}
+	}
+	
+	@Override
+	public void stop(int timeout) throws InterruptedException {
+		super.stop(timeout);
+		commandExecutor.shutdown();
+		loginExecutor.shutdownNow();
+		metricsSampler.shutdown();
+	}
+	
+	/**
+	 * Executor running the client commands
+	 * @return command executor
+	 */
+	public CommandExecutor getCommandExecutor() {
+		return commandExecutor;
+	}
+	
+	/**
+	 * Runs a password check on the login pool
+	 * @param task Login verification
+	 * @return true if accepted, false if the pool is saturated or stopped
+	 */
+	public boolean submitLogin(Runnable task) {
+		try {
+			loginExecutor.execute(task);
+			return true;
+		} catch (RejectedExecutionException e) {
+			return false;
 		}
 	}
+	
+	/**
+	 * Per address login attempt limits
+	 * @return login throttle
+	 */
+	public LoginThrottle getLoginThrottle() {
+		return loginThrottle;
+	}
+	
+	/**
+	 * Caps on open connections
+	 * @return connection admission
+	 */
+	public ConnectionAdmission getConnectionAdmission() {
+		return connectionAdmission;
+	}
+	
+	/**
+	 * Per connection command rate limits
+	 * @return command rate limiter
+	 */
+	public CommandRateLimiter getCommandRateLimiter() {
+		return commandRateLimiter;
+	}
+	
+	/**
+	 * Sampler pushing the metrics to the clients subscribed with SUBSCRIBE_METRICS
+	 * @return metrics sampler
+	 */
+	public MetricsSampler getMetricsSampler() {
+		return metricsSampler;
+	}
 
 	@Override
 	public void onClose(WebSocket conn, int code, String reason, boolean remote) {
-		LoginManager.getInstance().logOut(conn.getRemoteSocketAddress());
+		SendQueue queue = sendQueues.remove(conn);
+		if (queue != null) {
+			queue.release();
+			releaseConsoleFilter(queue.getConsoleFilter());
+			connectionAdmission.onClose(queue.getAddress());
+		}
+		metricsSampler.unsubscribe(conn);
+		LoginManager.getInstance().logOut(conn);
 		Bukkit.getLogger().info(Internationalization.getPhrase("closed-connection", conn.getRemoteSocketAddress()));
 	}
 
@@ -88,26 +434,374 @@ public class WSServer extends WebSocketServer {
 	}
 
 	/**
-	 * Sends the message to all connected AND logged-in users
+	 * Sends the message to all connected AND logged-in users not using batched mode whose subscription accepts it.
+	 * Each distinct filter is evaluated once, and the line is serialized only once, the resulting UTF-8 frame being shared by every receiver.
+	 */
+	public void onNewConsoleLinePrinted(ConsoleLine line) {
+		List<WebSocket> connections = getLoggedInConnections(false);
+		List<WebSocket> subscribers = new ArrayList<WebSocket>(connections.size());
+		Map<ConsoleFilter, Boolean> results = new IdentityHashMap<ConsoleFilter, Boolean>();
+		for (WebSocket conn : connections) {
+			ConsoleFilter filter = getConsoleFilter(conn);
+			if (filter == null) {
+				subscribers.add(conn);
+				continue;
+			}
+			Boolean matches = results.get(filter);
+			if (matches == null) {
+				matches = filter.matches(line);
+				results.put(filter, matches);
+			}
+			if (matches)
+				subscribers.add(conn);
+		}
+		
+		List<WebSocket> receivers = admitConsoleLines(subscribers, Collections.singletonList(line));
+		if (receivers.isEmpty())
+			return;
+		
+		sendToAll(new ConsoleOutput(line), receivers);
+	}
+	
+	/**
+	 * Sends a group of lines as a single frame to all connected AND logged-in users using batched mode.
+	 * Users sharing the same subscription filter share the same filtered batch.
+	 * @param lines Console lines, oldest first
+	 */
+	public void onConsoleBatch(List<ConsoleLine> lines) {
+		Map<ConsoleFilter, List<WebSocket>> groups = new IdentityHashMap<ConsoleFilter, List<WebSocket>>();
+		for (WebSocket conn : getLoggedInConnections(true)) {
+			ConsoleFilter filter = getConsoleFilter(conn);
+			List<WebSocket> group = groups.get(filter);
+			if (group == null) {
+				group = new ArrayList<WebSocket>();
+				groups.put(filter, group);
+			}
+			group.add(conn);
+		}
+		
+		for (Map.Entry<ConsoleFilter, List<WebSocket>> group : groups.entrySet()) {
+			List<ConsoleLine> filtered = group.getKey() == null ? lines : group.getKey().filter(lines);
+			if (filtered.isEmpty())
+				continue;
+			List<WebSocket> receivers = admitConsoleLines(group.getValue(), filtered);
+			if (receivers.isEmpty())
+				continue;
+			
+			sendToAll(new ConsoleBatch(Internationalization.getPhrase("console-batch-message", filtered.size()), filtered), receivers);
+		}
+	}
+	
+	/**
+	 * Sends the same response to several clients. It is serialized at most once per encoding.
+	 * Uncompressed clients share a single frame, while clients using permessage-deflate get their own frame,
+	 * as each one has its own compression context.
+	 * @param content Response
+	 * @param receivers Connections to send it to
+	 */
+	private void sendToAll(JSONOutput content, List<WebSocket> receivers) {
+		String text = null;
+		byte[] binary = null;
+		List<WebSocket> sharedText = new ArrayList<WebSocket>(receivers.size());
+		List<WebSocket> sharedBinary = new ArrayList<WebSocket>();
+		for (WebSocket conn : receivers) {
+			boolean useBinary = isBinary(conn);
+			if (useBinary && binary == null)
+				binary = content.toBinary();
+			else if (!useBinary && text == null)
+				text = content.toJSON();
+			
+			if (DeflateExtension.of(conn) == null) {
+				(useBinary ? sharedBinary : sharedText).add(conn);
+				continue;
+			}
+			try {
+				if (useBinary)
+					send(conn, binary);
+				else
+					send(conn, text);
+			} catch (WebsocketNotConnectedException e) {
+				// Closed while broadcasting, onClose will clean it up
+			}
+		}
+		if (!sharedText.isEmpty())
+			broadcast(text, sharedText);
+		if (!sharedBinary.isEmpty())
+			broadcast(binary, sharedBinary);
+	}
+	
+	/**
+	 * Sends text to a client. Sends to clients using permessage-deflate are serialized, so frames are written
+	 * in the same order they were compressed, as required when the compression context is kept between messages.
+	 * @param conn Connection to client
+	 * @param text Serialized response
+	 */
+	private void send(WebSocket conn, String text) {
+		DeflateExtension deflate = DeflateExtension.of(conn);
+		if (deflate == null) {
+			conn.send(text);
+			return;
+		}
+		synchronized (deflate) {
+			conn.send(text);
+		}
+	}
+	
+	/**
+	 * Sends a binary message to a client, serialized like {@link #send(WebSocket, String)}
+	 * @param conn Connection to client
+	 * @param binary Encoded response
+	 */
+	private void send(WebSocket conn, byte[] binary) {
+		DeflateExtension deflate = DeflateExtension.of(conn);
+		if (deflate == null) {
+			conn.send(binary);
+			return;
+		}
+		synchronized (deflate) {
+			conn.send(binary);
+		}
+	}
+	
+	/**
+	 * Sends UTF-8 encoded JSON as a text frame, serialized like {@link #send(WebSocket, String)}.
+	 * The frame is written into the connection's outgoing queue before returning, so the buffer can be reused afterwards.
+	 * @param conn Connection to client
+	 * @param utf8 Serialized response, between its position and limit
+	 */
+	private void send(WebSocket conn, ByteBuffer utf8) {
+		TextFrame frame = new TextFrame();
+		frame.setPayload(utf8);
+		DeflateExtension deflate = DeflateExtension.of(conn);
+		if (deflate == null) {
+			conn.sendFrame(frame);
+			return;
+		}
+		synchronized (deflate) {
+			conn.sendFrame(frame);
+		}
+	}
+	
+	/**
+	 * Check if a client receives responses with the binary encoding
+	 * @param conn Connection
+	 * @return true if binary, false if JSON
+	 */
+	private boolean isBinary(WebSocket conn) {
+		SendQueue queue = sendQueues.get(conn);
+		return queue != null ? queue.isBinary() : negotiatedBinary(conn);
+	}
+	
+	/**
+	 * Get the console subscription of a connection
+	 * @param conn Connection
+	 * @return filter, or null if the connection receives every line
+	 */
+	public ConsoleFilter getConsoleFilter(WebSocket conn) {
+		SendQueue queue = sendQueues.get(conn);
+		return queue == null ? null : queue.getConsoleFilter();
+	}
+	
+	/**
+	 * Changes the console subscription of a connection. Equal filters are shared between connections,
+	 * so the broadcaster evaluates them only once per line.
+	 * @param conn Connection
+	 * @param filter New filter, or null to receive every line
+	 * @return the filter instance now used by the connection
+	 */
+	public ConsoleFilter setConsoleFilter(WebSocket conn, ConsoleFilter filter) {
+		SendQueue queue = sendQueues.get(conn);
+		if (queue == null)
+			return filter;
+		
+		ConsoleFilter shared = null;
+		if (filter != null) {
+			shared = consoleFilters.putIfAbsent(filter, filter);
+			if (shared == null)
+				shared = filter;
+		}
+		ConsoleFilter previous = queue.getConsoleFilter();
+		queue.setConsoleFilter(shared);
+		releaseConsoleFilter(previous);
+		return shared;
+	}
+	
+	/**
+	 * Forgets a shared filter once no connection uses it anymore
+	 * @param filter Filter no longer used by some connection
+	 */
+	private void releaseConsoleFilter(ConsoleFilter filter) {
+		if (filter == null)
+			return;
+		for (SendQueue queue : sendQueues.values())
+			if (queue.getConsoleFilter() == filter)
+				return;
+		consoleFilters.remove(filter, filter);
+	}
+	
+	/**
+	 * Get all open connections with a logged in user
+	 * @param consoleBatching true to get users that negotiated batched console mode, false to get the rest
+	 * @return list of logged in connections
 	 */
-	public void onNewConsoleLinePrinted(String line) {
+	private List<WebSocket> getLoggedInConnections(boolean consoleBatching) {
 		Collection<WebSocket> connections = getConnections();
+		List<WebSocket> loggedIn = new ArrayList<WebSocket>(connections.size());
 		for (WebSocket connection : connections) {
-			if (LoginManager.getInstance().isSocketConnected(connection.getRemoteSocketAddress()))
-				sendToClient(connection, new ConsoleOutput(line, DateTimeUtils.getTimeAsString()));
+			ConnectedUser user = LoginManager.getInstance().getUser(connection);
+			if (user != null && user.isConsoleBatching() == consoleBatching)
+				loggedIn.add(connection);
+		}
+		return loggedIn;
+	}
+	
+	/**
+	 * Applies the slow consumer policy to the receivers of some console lines.
+	 * Clients over their outbound budget hold, drop or get disconnected instead of receiving the lines.
+	 * @param connections Candidate receivers
+	 * @param lines Console lines about to be sent
+	 * @return receivers within their budget
+	 */
+	private List<WebSocket> admitConsoleLines(List<WebSocket> connections, List<ConsoleLine> lines) {
+		List<WebSocket> admitted = new ArrayList<WebSocket>(connections.size());
+		for (WebSocket conn : connections) {
+			SendQueue queue = sendQueues.get(conn);
+			if (queue == null) {
+				admitted.add(conn);
+			} else if (!queue.isOverBudget(maxBufferedBytes, maxBufferedFrames, globalMaxBufferedBytes)) {
+				flushPendingConsoleLines(queue);
+				admitted.add(conn);
+			} else if (slowConsumerPolicy == SlowConsumerPolicy.COALESCE) {
+				for (ConsoleLine line : lines)
+					queue.coalesce(line, maxBufferedBytes);
+			} else if (slowConsumerPolicy == SlowConsumerPolicy.DROP) {
+				for (int i = 0; i < lines.size(); i++)
+					queue.onLineDropped();
+			} else {
+				disconnectSlowConsumer(conn);
+			}
+		}
+		return admitted;
+	}
+	
+	/**
+	 * Sends the console lines held for clients that caught up with their outbound budget.
+	 * Called periodically by the console broadcaster thread.
+	 */
+	public void flushPendingConsoleLines() {
+		for (SendQueue queue : sendQueues.values())
+			if (queue.hasPendingLines() && !queue.isOverBudget(maxBufferedBytes, maxBufferedFrames, globalMaxBufferedBytes))
+				flushPendingConsoleLines(queue);
+	}
+	
+	/**
+	 * Sends the console lines held for a client as a single frame.
+	 * Clients using batched mode get a CONSOLE_BATCH frame, the rest get a multi-line console output.
+	 * @param queue Outbound state of the client
+	 */
+	private void flushPendingConsoleLines(SendQueue queue) {
+		if (!queue.hasPendingLines())
+			return;
+		List<ConsoleLine> lines = queue.takePendingLines();
+		WebSocket conn = queue.getConnection();
+		ConnectedUser user = LoginManager.getInstance().getUser(conn);
+		if (user == null || lines.isEmpty())
+			return;
+		
+		if (user.isConsoleBatching()) {
+			sendToClient(conn, new ConsoleBatch(Internationalization.getPhrase("console-batch-message", lines.size()), lines));
+		} else {
+			StringBuilder message = new StringBuilder();
+			for (ConsoleLine line : lines) {
+				if (message.length() > 0)
+					message.append('\n');
+				message.append(line.getMessage());
+			}
+			ConsoleLine last = lines.get(lines.size() - 1);
+			sendToClient(conn, new ConsoleOutput(message.toString(), DateTimeUtils.getTimeAsString(last.getTimestamp()), last.getSequence()));
 		}
 	}
+	
+	/**
+	 * Closes a connection that cannot keep up with its outbound traffic
+	 * @param conn Connection to close
+	 */
+	private void disconnectSlowConsumer(WebSocket conn) {
+		if (conn.isClosing() || conn.isClosed())
+			return;
+		conn.close(slowConsumerCloseCode, "Slow consumer");
+		Bukkit.getLogger().warning(Internationalization.getPhrase("slow-consumer-disconnected", conn.getRemoteSocketAddress()));
+	}
+	
+	/**
+	 * Outbound state of all open connections
+	 * @return send queues
+	 */
+	public Collection<SendQueue> getSendQueues() {
+		return sendQueues.values();
+	}
 
 	/**
-	 * Sends this JSONOutput to client
+	 * Sends this JSONOutput to client. Metrics are dropped if the client is over its outbound budget.
 	 * @param conn    Connection to client
 	 * @param content JSONOutput object
 	 */
 	public void sendToClient(WebSocket conn, JSONOutput content) {
+		deliver(conn, content, null);
+	}
+	
+	/**
+	 * Sends the response to a request, echoing the request id if the client sent one
+	 * @param conn    Connection to client
+	 * @param request Request being answered
+	 * @param content JSONOutput object
+	 */
+	public void sendToClient(WebSocket conn, WSRequest request, JSONOutput content) {
+		deliver(conn, content, request.getId());
+	}
+	
+	/**
+	 * Sends the same metrics frame to several clients, serialized once per encoding.
+	 * Like any metrics response, it is dropped for clients over their buffer budget.
+	 * @param content Metrics
+	 * @param receivers Connections to send it to
+	 */
+	public void sendMetrics(MetricsOutput content, List<WebSocket> receivers) {
+		List<WebSocket> admitted = new ArrayList<WebSocket>(receivers.size());
+		for (WebSocket conn : receivers)
+			if (sendQueues.containsKey(conn) && admitMetrics(conn))
+				admitted.add(conn);
+		if (!admitted.isEmpty())
+			sendToAll(content, admitted);
+	}
+	
+	/**
+	 * Checks the buffer budget of a client before sending it metrics, applying the slow consumer policy if it is over it
+	 * @param conn Connection
+	 * @return false if the frame must not be sent
+	 */
+	private boolean admitMetrics(WebSocket conn) {
+		SendQueue queue = sendQueues.get(conn);
+		if (queue == null || !queue.isOverBudget(maxBufferedBytes, maxBufferedFrames, globalMaxBufferedBytes))
+			return true;
+		if (slowConsumerPolicy == SlowConsumerPolicy.DISCONNECT)
+			disconnectSlowConsumer(conn);
+		else
+			queue.onFrameDropped();
+		return false;
+	}
+	
+	private void deliver(WebSocket conn, JSONOutput content, String id) {
+		if (content instanceof MetricsOutput && !admitMetrics(conn))
+			return;
+		
 		try {
-			conn.send(content.toJSON());
+			if (isBinary(conn))
+				send(conn, id == null ? content.toBinary() : BinaryOutput.withId(content.toBinary(), id));
+			else
+				send(conn, ResponseWriter.toUtf8(content, id));
 		}catch(WebsocketNotConnectedException e) {
-			LoginManager.getInstance().logOut(conn.getRemoteSocketAddress());
+			LoginManager.getInstance().logOut(conn);
 			Bukkit.getLogger().warning(Internationalization.getPhrase("error-disconnected-client"));
 		}
 		
@@ -0,0 +1,71 @@
+package es.mesacarlos.webconsole.websocket.command;
+
+import java.util.List;
+
+import org.bukkit.Bukkit;
+import org.java_websocket.WebSocket;
+
+import es.mesacarlos.webconsole.WebConsole;
+import es.mesacarlos.webconsole.config.ConfigManager;
+import es.mesacarlos.webconsole.console.ConsoleFilter;
+import es.mesacarlos.webconsole.console.ConsoleLine;
+import es.mesacarlos.webconsole.console.ConsoleScrollback;
+import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.websocket.WSRequest;
+import es.mesacarlos.webconsole.websocket.WSServer;
+import es.mesacarlos.webconsole.websocket.response.ConsoleResume;
+import es.mesacarlos.webconsole.websocket.response.UnknownCommand;
+
+/**
+ * Sends the console lines a reconnecting client missed, based on the last sequence number it saw.
+ * This replaces replaying the whole latest.log file with READLOGFILE.
+ */
+public class ConsoleResumeCommand implements WSCommand {
+
+	@Override
+	public void execute(WSServer wsServer, WebSocket conn, WSRequest request) {
+		long since;
+		try {
+			since = Long.parseLong(request.getParams().trim());
+		} catch (NumberFormatException e) {
+			wsServer.sendToClient(conn, request, new UnknownCommand(Internationalization.getPhrase("unknown-command-message"), request.getMessage()));
+			return;
+		}
+		
+		wsServer.sendToClient(conn, request, missedLines(wsServer, conn, since));
+	}
+	
+	/**
+	 * Builds the response with the console lines a client missed, filtered by its subscription.
+	 * It holds up to console.resumeMaxBytes of lines, the client asks for the rest if it has more.
+	 * @param wsServer WebSocket server
+	 * @param conn Connection of the client
+	 * @param since Last sequence number the client saw
+	 * @return missed lines
+	 */
+	public static ConsoleResume missedLines(WSServer wsServer, WebSocket conn, long since) {
+		WebConsole plugin = (WebConsole) Bukkit.getPluginManager().getPlugin("WebConsole");
+		ConsoleScrollback scrollback = plugin.getConsoleBroadcaster().getScrollback();
+		// Sequences start again at 1 when the plugin is enabled, so a client ahead of them saw a previous run
+		boolean restarted = since > scrollback.getLastSequence();
+		if (restarted)
+			since = 0;
+		List<ConsoleLine> lines = scrollback.since(since, ConfigManager.getInstance().getResumeMaxBytes());
+		long lastSequence = lines.isEmpty() ? Math.max(since, scrollback.getLastSequence()) : lines.get(lines.size() - 1).getSequence();
+		boolean truncated = restarted || !lines.isEmpty() && lines.get(0).getSequence() > since + 1;
+		boolean more = lastSequence < scrollback.getLastSequence();
+		
+		ConsoleFilter filter = wsServer.getConsoleFilter(conn);
+		if (filter != null)
+			lines = filter.filter(lines);
+		
+		return new ConsoleResume(Internationalization.getPhrase("console-resume-message", lines.size()),
+				since, lastSequence, truncated, more, lines);
+	}
+
+	@Override
+	public boolean isInline() {
+		return true; // Must not race the live lines that follow it
+	}
+
+}
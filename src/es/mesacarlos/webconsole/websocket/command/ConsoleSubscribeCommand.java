@@ -0,0 +1,41 @@
+package es.mesacarlos.webconsole.websocket.command;
+
+import org.java_websocket.WebSocket;
+
+import es.mesacarlos.webconsole.console.ConsoleFilter;
+import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.websocket.WSRequest;
+import es.mesacarlos.webconsole.websocket.WSServer;
+import es.mesacarlos.webconsole.websocket.response.ConsoleSubscribed;
+import es.mesacarlos.webconsole.websocket.response.UnknownCommand;
+
+/**
+ * Sets the console lines a client wants to receive: minimum level, logger name prefixes and include/exclude regular expressions.
+ * Empty params remove the filter.
+ */
+public class ConsoleSubscribeCommand implements WSCommand {
+
+	@Override
+	public void execute(WSServer wsServer, WebSocket conn, WSRequest request) {
+		ConsoleFilter filter = null;
+		if (!request.getParams().trim().isEmpty()) {
+			try {
+				if (request.getParamsObject() == null)
+					throw new IllegalArgumentException("Filter must be a JSON object");
+				filter = ConsoleFilter.fromJson(request.getParamsObject());
+			} catch (IllegalArgumentException e) {
+				wsServer.sendToClient(conn, request, new UnknownCommand(Internationalization.getPhrase("console-subscribe-invalid", e.getMessage()), request.getMessage()));
+				return;
+			}
+		}
+		
+		filter = wsServer.setConsoleFilter(conn, filter);
+		wsServer.sendToClient(conn, request, new ConsoleSubscribed(Internationalization.getPhrase("console-subscribe-message"), filter));
+	}
+
+	@Override
+	public boolean isInline() {
+		return true; // Applies to every console line sent after it
+	}
+
+}
@@ -1,40 +1,65 @@
 package es.mesacarlos.webconsole.websocket.command;
 
 import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
 
 import javax.management.Attribute;
 import javax.management.AttributeList;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 
+import org.bukkit.Bukkit;
 import org.java_websocket.WebSocket;
 
 import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.websocket.WSRequest;
 import es.mesacarlos.webconsole.websocket.WSServer;
 import es.mesacarlos.webconsole.websocket.response.CpuUsage;
 
 public class CpuUsageCommand implements WSCommand {
+	// Resolved once, looking them up on every sample was most of the cost of this command
+	private static final MBeanServer MBEAN_SERVER = ManagementFactory.getPlatformMBeanServer();
+	private static final ObjectName OPERATING_SYSTEM = operatingSystemName();
+	private static final String[] ATTRIBUTES = {"SystemCpuLoad"};
 
 	@Override
-	public void execute(WSServer wsServer, WebSocket conn, String params) {
+	public void execute(WSServer wsServer, WebSocket conn, WSRequest request) {
 		try {
-			double usage = getProcessCpuLoad();
-			wsServer.sendToClient(conn, new CpuUsage(Internationalization.getPhrase("cpu-usage-message", usage), usage));
+			wsServer.sendToClient(conn, request, sample());
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 	
+	/**
+	 * Builds the CPU usage response
+	 * @return CPU usage
+	 * @throws Exception Something went wrong
+	 */
+	public static CpuUsage sample() throws Exception {
+		double usage = getProcessCpuLoad();
+		return new CpuUsage(Internationalization.getPhrase("cpu-usage-message", usage), usage);
+	}
+	
+	private static ObjectName operatingSystemName() {
+		try {
+			return ObjectName.getInstance(ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME);
+		} catch (Exception e) {
+			Bukkit.getLogger().log(Level.WARNING, "[WebConsole] Cannot read CPU usage", e);
+			return null;
+		}
+	}
+	
 	/**
 	 * Check out usage for the whole system
 	 * Got from https://stackoverflow.com/questions/18489273/how-to-get-percentage-of-cpu-usage-of-os-from-java
 	 * @return CPU Usage for the whole system
 	 * @throws Exception Something went wrong
 	 */
-	public double getProcessCpuLoad() throws Exception {
-		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
-		ObjectName name = ObjectName.getInstance("java.lang:type=OperatingSystem");
-		AttributeList list = mbs.getAttributes(name, new String[] {"SystemCpuLoad"});
+	public static double getProcessCpuLoad() throws Exception {
+		if (OPERATING_SYSTEM == null)
+			return Double.NaN;
+		AttributeList list = MBEAN_SERVER.getAttributes(OPERATING_SYSTEM, ATTRIBUTES);
 
 		if (list.isEmpty())
 			return Double.NaN;
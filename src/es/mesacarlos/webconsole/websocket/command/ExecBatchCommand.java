@@ -0,0 +1,140 @@
+package es.mesacarlos.webconsole.websocket.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import org.bukkit.Bukkit;
+import org.java_websocket.WebSocket;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import es.mesacarlos.webconsole.WebConsole;
+import es.mesacarlos.webconsole.auth.ConnectedUser;
+import es.mesacarlos.webconsole.auth.LoginManager;
+import es.mesacarlos.webconsole.config.ConfigManager;
+import es.mesacarlos.webconsole.config.UserType;
+import es.mesacarlos.webconsole.minecraft.CapturingConsoleSender;
+import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.util.MainThreadExecutor;
+import es.mesacarlos.webconsole.websocket.WSRequest;
+import es.mesacarlos.webconsole.websocket.WSServer;
+import es.mesacarlos.webconsole.websocket.response.ExecBatchResult;
+import es.mesacarlos.webconsole.websocket.response.UnknownCommand;
+
+/**
+ * Runs an ordered list of console commands: {"commands": ["gamerule keepInventory true", "worldborder set 5000"]}
+ * Every command is checked against the whitelist before any of them runs, so a batch runs completely or not at all.
+ * The batch runs as a single main thread task, which walks the commands in order and continues in the next tick
+ * when the tick budget runs out. Batches longer than requests.maxBatchCommands are rejected.
+ * The output of each command is returned with its result. Add "broadcast": false to keep it from other console viewers.
+ */
+public class ExecBatchCommand implements WSCommand {
+	private static final String COMMANDS_PROPERTY = "commands";
+
+	@Override
+	public void execute(WSServer wsServer, WebSocket conn, WSRequest request) {
+		ConnectedUser u = LoginManager.getInstance().getUser(conn);
+		if(u == null || u.getUserType() != UserType.ADMIN) {
+			if(u != null)
+				Bukkit.getLogger().warning(Internationalization.getPhrase("no-send-permission-console", u, "EXEC_BATCH"));
+			return;
+		}
+
+		List<String> commands = readCommands(request.getParamsObject());
+		if (commands == null) {
+			wsServer.sendToClient(conn, request, new UnknownCommand(Internationalization.getPhrase("exec-batch-invalid"), request.getMessage()));
+			return;
+		}
+		int maxCommands = ConfigManager.getInstance().getMaxBatchCommands();
+		if (commands.size() > maxCommands) {
+			wsServer.sendToClient(conn, request, new UnknownCommand(Internationalization.getPhrase("exec-batch-too-long", commands.size(), maxCommands),
+					request.getMessage()));
+			return;
+		}
+
+		// Validate all commands before running any of them
+		List<String> results = new ArrayList<String>(commands.size());
+		int denied = 0;
+		for (String command : commands) {
+			if (ExecCommand.checkWhitelist(conn, command)) {
+				results.add(ExecBatchResult.SKIPPED);
+			} else {
+				results.add(ExecBatchResult.DENIED);
+				denied++;
+				Bukkit.getLogger().warning(Internationalization.getPhrase("no-send-permission-console", u, command));
+			}
+		}
+		if (denied > 0) {
+			wsServer.sendToClient(conn, request, new ExecBatchResult(Internationalization.getPhrase("exec-batch-denied-message", denied),
+					commands, results, null, null, 0));
+			return;
+		}
+
+		WebConsole plugin = (WebConsole) Bukkit.getPluginManager().getPlugin("WebConsole");
+		MainThreadExecutor mainThread = plugin.getMainThreadExecutor();
+		boolean broadcast = !request.getParamsObject().has(ExecCommand.BROADCAST_PROPERTY) || request.getParamBoolean(ExecCommand.BROADCAST_PROPERTY);
+		List<CapturingConsoleSender> senders = new ArrayList<CapturingConsoleSender>(commands.size());
+		for (String command : commands) {
+			Bukkit.getLogger().info(Internationalization.getPhrase("cmd-executed-console", conn.getRemoteSocketAddress(), Internationalization.utf8ToIso(command)));
+			senders.add(new CapturingConsoleSender(Bukkit.getServer().getConsoleSender(), broadcast));
+		}
+
+		// Filled on the main thread, read here once the batch is done
+		List<String> errors = new ArrayList<String>(Collections.<String>nCopies(commands.size(), null));
+		try {
+			mainThread.submitSteps(commands.size(), i -> {
+				try {
+					boolean known = Bukkit.dispatchCommand(senders.get(i).getSender(), commands.get(i));
+					results.set(i, known ? ExecBatchResult.EXECUTED : ExecBatchResult.UNKNOWN);
+				} catch (RuntimeException e) {
+					results.set(i, ExecBatchResult.ERROR);
+					errors.set(i, String.valueOf(e.getMessage()));
+				}
+			}).get();
+		} catch (InterruptedException | ExecutionException | CancellationException e) {
+			// The plugin is stopping. Commands that did not run are reported as errors below
+		}
+
+		List<List<String>> outputs = new ArrayList<List<String>>(commands.size());
+		int executed = 0;
+		for (int i = 0; i < commands.size(); i++) {
+			String result = results.get(i);
+			if (result.equals(ExecBatchResult.SKIPPED)) {
+				results.set(i, ExecBatchResult.ERROR);
+				errors.set(i, Internationalization.getPhrase("exec-batch-stopped"));
+			} else if (!result.equals(ExecBatchResult.ERROR)) {
+				executed++;
+			}
+			outputs.add(senders.get(i).getOutput());
+		}
+
+		wsServer.sendToClient(conn, request, new ExecBatchResult(Internationalization.getPhrase("exec-batch-message", executed, commands.size()),
+				commands, results, errors, outputs, executed));
+	}
+
+	/**
+	 * Reads the list of commands of the batch
+	 * @param params Request params
+	 * @return commands, or null if params have no non-empty array of strings
+	 */
+	private List<String> readCommands(JsonObject params) {
+		if (params == null)
+			return null;
+		JsonElement array = params.get(COMMANDS_PROPERTY);
+		if (array == null || !array.isJsonArray() || array.getAsJsonArray().size() == 0)
+			return null;
+
+		List<String> commands = new ArrayList<String>(array.getAsJsonArray().size());
+		for (JsonElement element : array.getAsJsonArray()) {
+			if (!element.isJsonPrimitive() || !element.getAsJsonPrimitive().isString())
+				return null;
+			commands.add(element.getAsString());
+		}
+		return commands;
+	}
+
+}
@@ -1,26 +1,38 @@
 package es.mesacarlos.webconsole.websocket.command;
 
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import es.mesacarlos.webconsole.config.ConfigManager;
 import es.mesacarlos.webconsole.config.UserData;
 import org.bukkit.Bukkit;
-import org.bukkit.command.ConsoleCommandSender;
 import org.java_websocket.WebSocket;
 
 import es.mesacarlos.webconsole.WebConsole;
 import es.mesacarlos.webconsole.auth.LoginManager;
 import es.mesacarlos.webconsole.auth.ConnectedUser;
 import es.mesacarlos.webconsole.config.UserType;
+import es.mesacarlos.webconsole.minecraft.CapturingConsoleSender;
 import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.websocket.WSRequest;
 import es.mesacarlos.webconsole.websocket.WSServer;
+import es.mesacarlos.webconsole.websocket.response.CommandOutput;
 
 public class ExecCommand implements WSCommand {
-	LoginManager loginManager = LoginManager.getInstance();
+	static final String COMMAND_PROPERTY = "command";
+	static final String BROADCAST_PROPERTY = "broadcast";
 
 	@Override
-	public void execute(WSServer wsServer, WebSocket conn, String command) {
-		ConnectedUser u = LoginManager.getInstance().getUser(conn.getRemoteSocketAddress());
+	public void execute(WSServer wsServer, WebSocket conn, WSRequest request) {
+		// Params are the command itself, or {"command": "...", "broadcast": false} to keep its output from other viewers
+		String command = request.getParams();
+		boolean broadcast = true;
+		if (request.getParamString(COMMAND_PROPERTY) != null) {
+			command = request.getParamString(COMMAND_PROPERTY);
+			broadcast = !request.getParamsObject().has(BROADCAST_PROPERTY) || request.getParamBoolean(BROADCAST_PROPERTY);
+		}
+		
+		ConnectedUser u = LoginManager.getInstance().getUser(conn);
 		if(u == null || u.getUserType() != UserType.ADMIN) {
 			if(u != null)
 				Bukkit.getLogger().warning(Internationalization.getPhrase("no-send-permission-console", u, command));
@@ -34,62 +46,33 @@ public class ExecCommand implements WSCommand {
 		}
 		
 		Bukkit.getLogger().info(Internationalization.getPhrase("cmd-executed-console", conn.getRemoteSocketAddress(), Internationalization.utf8ToIso(command)));
-		ConsoleCommandSender sender = Bukkit.getServer().getConsoleSender();
 		WebConsole plugin = (WebConsole) Bukkit.getPluginManager().getPlugin("WebConsole");
+		CapturingConsoleSender sender = new CapturingConsoleSender(Bukkit.getServer().getConsoleSender(), broadcast);
+		String dispatched = command;
 		try {
-			@SuppressWarnings("unused")
-			boolean success = Bukkit.getScheduler()
-					.callSyncMethod(plugin, () -> Bukkit.dispatchCommand(sender, command)).get();
+			boolean success = plugin.getMainThreadExecutor()
+					.submit(() -> Bukkit.dispatchCommand(sender.getSender(), dispatched)).get();
+			List<String> output = sender.getOutput();
+			wsServer.sendToClient(conn, request, new CommandOutput(Internationalization.getPhrase("exec-output-message", output.size()),
+					command, success, output));
 		} catch (InterruptedException | ExecutionException e) {
 			e.printStackTrace();
 		}
 
 	}
 	
-	private boolean checkWhitelist(WebSocket conn, String command) {
-		for(UserData ud : ConfigManager.getInstance().getAllUsers()) {
-			if (ud.getUsername().equals(loginManager.getUser(conn.getRemoteSocketAddress()).getUsername())) {
-
-				if (!ud.isWhitelistEnabled()) { //Skip whitelist check.
-					return true;
-				}
-
-				String[] splitCommand = command.split(" ");
-
-				for (String whitelistedCommand : ud.getWhitelistedCommands()) {
-					String[] splitWhitelistedCommand = whitelistedCommand.split(" ");
-
-					if(equalsArray(splitCommand, splitWhitelistedCommand)) {
-						//Command matches the whitelist
-						if(ud.isWhitelistActsAsBlacklist())
-							return false; //If acts as blacklist, do not allow command
-						else
-							return true; //If acts as Whitelist, allow command
-					}
-				}
-				
-				//If execution reached this point, then the command is not in the blacklist.
-				if(ud.isWhitelistActsAsBlacklist())
-					return true; //If acts as blacklist, allow command
-				else
-					return false; //If acts as Whitelist, do not allow command
-			}
-		}
-		throw new RuntimeException("No user matched the whitelist check.");
-	}
-	
 	/**
-	 * Check if the user command matches the whitelisted command
-	 * 
-	 * @param splitCommand Command sent by user
-	 * @param splitWhitelistedCommand Command in the whitelist
-	 * @return true if the user command matches the whitelist command
+	 * Check if the user of a connection may run a command, according to its whitelist
+	 * @param conn Connection of a logged in user
+	 * @param command Command to run
+	 * @return true if the command is allowed
 	 */
-	private boolean equalsArray(String[] splitCommand, String[] splitWhitelistedCommand) {
-		for (int i = 0; i < splitWhitelistedCommand.length; i++)
-			if (!splitCommand[i].equalsIgnoreCase(splitWhitelistedCommand[i])) 
-				return false; //Does not match so far
-		return true; //Matches the command
+	static boolean checkWhitelist(WebSocket conn, String command) {
+		ConnectedUser user = LoginManager.getInstance().getUser(conn);
+		UserData ud = user == null ? null : ConfigManager.getInstance().getUserRegistry().getUser(user.getUsername());
+		if (ud == null)
+			return false; // Logged out, or removed from config.yml by a reload
+		return ud.getWhitelist().allows(command);
 	}
 
 }
\ No newline at end of file
@@ -1,8 +1,9 @@
 package es.mesacarlos.webconsole.websocket.command.FileManagement;
 
+import java.io.File;
+
 import org.java_websocket.WebSocket;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
 import es.mesacarlos.webconsole.websocket.command.WSCommand;
@@ -11,46 +12,46 @@ import es.mesacarlos.webconsole.auth.ConnectedUser;
 import es.mesacarlos.webconsole.config.UserType;
 import es.mesacarlos.webconsole.util.FileManager;
 import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.websocket.WSRequest;
 import es.mesacarlos.webconsole.websocket.WSServer;
 import es.mesacarlos.webconsole.websocket.response.FileManagement.FileDownloadResponse;
 import es.mesacarlos.webconsole.websocket.response.FileManagement.FileErrorResponse;
 
 public class FileDownloadCommand implements WSCommand {
 
-    private static final Gson gson = new Gson();
-
     @Override
-    public void execute(WSServer wsServer, WebSocket conn, String params) {
-        ConnectedUser user = es.mesacarlos.webconsole.auth.LoginManager.getInstance().getUser(conn.getRemoteSocketAddress());
+    public void execute(WSServer wsServer, WebSocket conn, WSRequest request) {
+        ConnectedUser user = es.mesacarlos.webconsole.auth.LoginManager.getInstance().getUser(conn);
         if (user == null || user.getUserType() != UserType.ADMIN) {
-            wsServer.sendToClient(conn, new FileErrorResponse(403, Internationalization.getPhrase("no-send-permission")));
+            wsServer.sendToClient(conn, request, new FileErrorResponse(403, Internationalization.getPhrase("no-send-permission")));
             return;
         }
 
-        if (params == null || params.isEmpty()) {
-            wsServer.sendToClient(conn, new FileErrorResponse(400, Internationalization.getPhrase("missing-parameters")));
+        if (request.getParams().isEmpty()) {
+            wsServer.sendToClient(conn, request, new FileErrorResponse(400, Internationalization.getPhrase("missing-parameters")));
             return;
         }
 
         String path;
         try {
-            JsonObject jsonParams = gson.fromJson(params, JsonObject.class);
+            JsonObject jsonParams = request.getParamsObject();
             path = jsonParams.get("path").getAsString();
         } catch (Exception e) {
-            wsServer.sendToClient(conn, new FileErrorResponse(400, Internationalization.getPhrase("invalid-parameters")));
+            wsServer.sendToClient(conn, request, new FileErrorResponse(400, Internationalization.getPhrase("invalid-parameters")));
             return;
         }
 
         if (!FileManager.isValidExistingFile(path)) {
-            wsServer.sendToClient(conn, new FileErrorResponse(404, Internationalization.getPhrase("file-not-found")));
+            wsServer.sendToClient(conn, request, new FileErrorResponse(404, Internationalization.getPhrase("file-not-found")));
             return;
         }
 
         try {
-            String downloadResponse = FileManager.getDownloadResponse(path);
-            wsServer.sendToClient(conn, new FileDownloadResponse(downloadResponse));
+            File file = new File(path);
+            byte[] content = FileManager.readFileForDownload(path);
+            wsServer.sendToClient(conn, request, new FileDownloadResponse(file.getName(), path, content.length, content));
         } catch (Exception e) {
-            wsServer.sendToClient(conn, new FileErrorResponse(500, e.getMessage()));
+            wsServer.sendToClient(conn, request, new FileErrorResponse(500, e.getMessage()));
         }
     }
 }
@@ -8,6 +8,7 @@ import es.mesacarlos.webconsole.auth.ConnectedUser;
 import es.mesacarlos.webconsole.config.UserType;
 import es.mesacarlos.webconsole.util.FileManager;
 import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.websocket.WSRequest;
 import es.mesacarlos.webconsole.websocket.WSServer;
 import es.mesacarlos.webconsole.websocket.response.FileManagement.FileListResponse;
 import es.mesacarlos.webconsole.websocket.response.FileManagement.FileErrorResponse;
@@ -16,25 +17,25 @@ import es.mesacarlos.webconsole.websocket.response.FileManagement.FileReadRespon
 public class FileListCommand implements WSCommand {
 
     @Override
-    public void execute(WSServer wsServer, WebSocket conn, String params) {
-        ConnectedUser user = es.mesacarlos.webconsole.auth.LoginManager.getInstance().getUser(conn.getRemoteSocketAddress());
+    public void execute(WSServer wsServer, WebSocket conn, WSRequest request) {
+        ConnectedUser user = es.mesacarlos.webconsole.auth.LoginManager.getInstance().getUser(conn);
         if (user == null || user.getUserType() != UserType.ADMIN) {
-            wsServer.sendToClient(conn, new FileErrorResponse(403, Internationalization.getPhrase("no-send-permission")));
+            wsServer.sendToClient(conn, request, new FileErrorResponse(403, Internationalization.getPhrase("no-send-permission")));
             return;
         }
 
-        String path = params != null && !params.isEmpty() ? params : FileManager.getServerDirectory();
+        String path = !request.getParams().isEmpty() ? request.getParams() : FileManager.getServerDirectory();
 
         if (!FileManager.isValidExistingFolder(path)) {
-            wsServer.sendToClient(conn, new FileErrorResponse(404, Internationalization.getPhrase("folder-not-found")));
+            wsServer.sendToClient(conn, request, new FileErrorResponse(404, Internationalization.getPhrase("folder-not-found")));
             return;
         }
 
         try {
             String fileList = FileManager.listFilesAsJson(path);
-            wsServer.sendToClient(conn, new FileListResponse(fileList, path));
+            wsServer.sendToClient(conn, request, new FileListResponse(fileList, path));
         } catch (Exception e) {
-            wsServer.sendToClient(conn, new FileErrorResponse(500, e.getMessage()));
+            wsServer.sendToClient(conn, request, new FileErrorResponse(500, e.getMessage()));
         }
     }
 }
@@ -2,7 +2,6 @@ package es.mesacarlos.webconsole.websocket.command.FileManagement;
 
 import org.java_websocket.WebSocket;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
 import es.mesacarlos.webconsole.websocket.command.WSCommand;
@@ -11,57 +10,56 @@ import es.mesacarlos.webconsole.auth.ConnectedUser;
 import es.mesacarlos.webconsole.config.UserType;
 import es.mesacarlos.webconsole.util.FileManager;
 import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.websocket.WSRequest;
 import es.mesacarlos.webconsole.websocket.WSServer;
 import es.mesacarlos.webconsole.websocket.response.FileManagement.FileErrorResponse;
 import es.mesacarlos.webconsole.websocket.response.FileManagement.FileOperationResponse;
 
 public class FileRenameCommand implements WSCommand {
 
-    private static final Gson gson = new Gson();
-
     @Override
-    public void execute(WSServer wsServer, WebSocket conn, String params) {
-        ConnectedUser user = es.mesacarlos.webconsole.auth.LoginManager.getInstance().getUser(conn.getRemoteSocketAddress());
+    public void execute(WSServer wsServer, WebSocket conn, WSRequest request) {
+        ConnectedUser user = es.mesacarlos.webconsole.auth.LoginManager.getInstance().getUser(conn);
         if (user == null || user.getUserType() != UserType.ADMIN) {
-            wsServer.sendToClient(conn, new FileErrorResponse(403, Internationalization.getPhrase("no-send-permission")));
+            wsServer.sendToClient(conn, request, new FileErrorResponse(403, Internationalization.getPhrase("no-send-permission")));
             return;
         }
 
-        if (params == null || params.isEmpty()) {
-            wsServer.sendToClient(conn, new FileErrorResponse(400, Internationalization.getPhrase("missing-parameters")));
+        if (request.getParams().isEmpty()) {
+            wsServer.sendToClient(conn, request, new FileErrorResponse(400, Internationalization.getPhrase("missing-parameters")));
             return;
         }
 
         String oldPath;
         String newPath;
         try {
-            JsonObject jsonParams = gson.fromJson(params, JsonObject.class);
+            JsonObject jsonParams = request.getParamsObject();
             oldPath = jsonParams.get("oldPath").getAsString();
             newPath = jsonParams.get("newPath").getAsString();
         } catch (Exception e) {
-            wsServer.sendToClient(conn, new FileErrorResponse(400, Internationalization.getPhrase("invalid-parameters")));
+            wsServer.sendToClient(conn, request, new FileErrorResponse(400, Internationalization.getPhrase("invalid-parameters")));
             return;
         }
 
         if (!FileManager.isValidExistingFile(oldPath) && !FileManager.isValidExistingFolder(oldPath)) {
-            wsServer.sendToClient(conn, new FileErrorResponse(404, Internationalization.getPhrase("file-not-found")));
+            wsServer.sendToClient(conn, request, new FileErrorResponse(404, Internationalization.getPhrase("file-not-found")));
             return;
         }
 
         if (!FileManager.isValidFilePath(newPath)) {
-            wsServer.sendToClient(conn, new FileErrorResponse(403, Internationalization.getPhrase("access-denied")));
+            wsServer.sendToClient(conn, request, new FileErrorResponse(403, Internationalization.getPhrase("access-denied")));
             return;
         }
 
         try {
             boolean success = FileManager.renameFile(oldPath, newPath);
             if (success) {
-                wsServer.sendToClient(conn, new FileOperationResponse(200, Internationalization.getPhrase("file-renamed"), newPath));
+                wsServer.sendToClient(conn, request, new FileOperationResponse(200, Internationalization.getPhrase("file-renamed"), newPath));
             } else {
-                wsServer.sendToClient(conn, new FileErrorResponse(500, Internationalization.getPhrase("file-rename-failed")));
+                wsServer.sendToClient(conn, request, new FileErrorResponse(500, Internationalization.getPhrase("file-rename-failed")));
             }
         } catch (Exception e) {
-            wsServer.sendToClient(conn, new FileErrorResponse(500, e.getMessage()));
+            wsServer.sendToClient(conn, request, new FileErrorResponse(500, e.getMessage()));
         }
     }
 }
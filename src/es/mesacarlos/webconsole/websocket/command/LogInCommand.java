@@ -4,37 +4,95 @@ import java.util.UUID;
 
 import org.bukkit.Bukkit;
 import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
 
 import es.mesacarlos.webconsole.auth.LoginManager;
 import es.mesacarlos.webconsole.auth.ConnectedUser;
+import es.mesacarlos.webconsole.auth.LoginThrottle;
 import es.mesacarlos.webconsole.config.ConfigManager;
 import es.mesacarlos.webconsole.config.UserData;
 import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.util.JsonUtils;
+import es.mesacarlos.webconsole.websocket.WSRequest;
 import es.mesacarlos.webconsole.websocket.WSServer;
 import es.mesacarlos.webconsole.websocket.response.LoginRequired;
 import es.mesacarlos.webconsole.websocket.response.LoggedIn;
+import es.mesacarlos.webconsole.websocket.response.TooManyRequests;
 
 public class LogInCommand implements WSCommand {
 	
 	@Override
-	public void execute(WSServer wsServer, WebSocket conn, String password) {
+	public void execute(WSServer wsServer, WebSocket conn, WSRequest request) {
 		// If user is logged in, then return.
-		if (LoginManager.getInstance().isSocketConnected(conn.getRemoteSocketAddress()))
+		if (LoginManager.getInstance().getUser(conn) != null)
+			return;
+		
+		// Params are either the plain password, or an object with the password, optionally the username, and the requested session options
+		String password = request.getParams();
+		String username = null;
+		boolean consoleBatching = false;
+		if (request.getParamString(JsonUtils.PASSWORD_PROPERTY) != null) {
+			password = request.getParamString(JsonUtils.PASSWORD_PROPERTY);
+			username = request.getParamString(JsonUtils.USERNAME_PROPERTY);
+			consoleBatching = request.getParamBoolean(JsonUtils.CONSOLE_BATCH_PROPERTY);
+		}
+		
+		// Throttled attempts are answered without checking the password nor logging them
+		LoginThrottle throttle = wsServer.getLoginThrottle();
+		if (!throttle.tryAttempt(conn.getRemoteSocketAddress())) {
+			wsServer.sendToClient(conn, request, new TooManyRequests(Internationalization.getPhrase("login-throttled-message"), request.getCommand()));
+			return;
+		}
+		
+		String checkedUsername = username;
+		String checkedPassword = password;
+		boolean batching = consoleBatching;
+		boolean accepted = wsServer.submitLogin(() -> verify(wsServer, conn, request, checkedUsername, checkedPassword, batching));
+		if (!accepted)
+			wsServer.sendToClient(conn, request, new TooManyRequests(Internationalization.getPhrase("server-busy-message"), request.getCommand()));
+	}
+	
+	/**
+	 * Checks the password against the hashed ones in config.yml and logs the user in. Runs on the login pool.
+	 * @param wsServer WebSocket server
+	 * @param conn Connection that sent the request
+	 * @param request Login request
+	 * @param username User to check, or null to check the users with a plain text password
+	 * @param password Password sent by the client
+	 * @param consoleBatching Whether the client asked for batched console mode
+	 */
+	private void verify(WSServer wsServer, WebSocket conn, WSRequest request, String username, String password, boolean consoleBatching) {
+		if (!conn.isOpen())
 			return;
 		
 		//Check if user exists
-		for(UserData ud : ConfigManager.getInstance().getAllUsers()) {
-			if(ud.getPassword().equals(password)) {
-				ConnectedUser user = new ConnectedUser(conn.getRemoteSocketAddress(), ud.getUsername(), UUID.randomUUID().toString(), ud.getUserType());
-				LoginManager.getInstance().logIn(user);
-				
-				wsServer.sendToClient(conn, new LoggedIn(Internationalization.getPhrase("login-sucessful-message"), "LOGIN ********", user.getUsername(), user.getUserType(), user.getToken()));
-				Bukkit.getLogger().info(Internationalization.getPhrase("login-sucessful-console", user.toString()));
-				return;
-			}
+		UserData ud = ConfigManager.getInstance().getUserRegistry().authenticate(username, password);
+		if(ud != null) {
+			wsServer.getLoginThrottle().onSuccess(conn.getRemoteSocketAddress());
+			if (LoginManager.getInstance().getUser(conn) != null)
+				return; // Another LOGIN of this connection finished first
+			
+			ConnectedUser user = new ConnectedUser(conn.getRemoteSocketAddress(), ud.getUsername(), UUID.randomUUID().toString(), ud.getUserType(), consoleBatching);
+			LoginManager.getInstance().logIn(conn, user);
+			
+			wsServer.sendToClient(conn, request, new LoggedIn(Internationalization.getPhrase("login-sucessful-message"), "LOGIN ********", user.getUsername(), user.getUserType(), user.getToken(), user.isConsoleBatching(), wsServer.issueResumeToken(user)));
+			Bukkit.getLogger().info(Internationalization.getPhrase("login-sucessful-console", user.toString()));
+			return;
+		}
+		
+		long lockoutSeconds = wsServer.getLoginThrottle().onFailure(conn.getRemoteSocketAddress());
+		wsServer.sendToClient(conn, request, new LoginRequired(Internationalization.getPhrase("login-failed-message")));
+		if (lockoutSeconds > 0) {
+			Bukkit.getLogger().warning(Internationalization.getPhrase("login-locked-console", conn.getRemoteSocketAddress(), lockoutSeconds));
+			conn.close(CloseFrame.POLICY_VALIDATION, "Too many failed logins");
+		} else {
+			Bukkit.getLogger().info(Internationalization.getPhrase("login-failed-console", conn.getRemoteSocketAddress()));
 		}
-		wsServer.sendToClient(conn, new LoginRequired(Internationalization.getPhrase("login-failed-message")));
-		Bukkit.getLogger().info(Internationalization.getPhrase("login-failed-console", conn.getRemoteSocketAddress()));
 	}
 
-}
\ No newline at end of file
+	@Override
+	public boolean isInline() {
+		return true; // Only takes an attempt from the throttle, the password is checked on the login pool
+	}
+
+}
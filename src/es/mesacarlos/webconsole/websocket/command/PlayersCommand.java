@@ -2,34 +2,56 @@ package es.mesacarlos.webconsole.websocket.command;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.java_websocket.WebSocket;
 
+import es.mesacarlos.webconsole.WebConsole;
 import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.websocket.WSRequest;
 import es.mesacarlos.webconsole.websocket.WSServer;
 import es.mesacarlos.webconsole.websocket.response.Players;
 
 public class PlayersCommand implements WSCommand{
 
 	@Override
-	public void execute(WSServer wsServer, WebSocket conn, String params) {
-		List<String> connectedPlayersList = new ArrayList<String>();
-		for(Player player : Bukkit.getOnlinePlayers()) {
-			connectedPlayersList.add(player.getName());
+	public void execute(WSServer wsServer, WebSocket conn, WSRequest request) {
+		Players players;
+		try {
+			players = sample().get();
+		} catch (InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+			return;
 		}
 		
-		int connectedPlayers = connectedPlayersList.size();
-		int maxPlayers = Bukkit.getMaxPlayers();
-		
-		wsServer.sendToClient(conn, 
-			new Players(
+		wsServer.sendToClient(conn, request, players);
+	}
+	
+	/**
+	 * Builds the players response. The player list is not thread safe, so it is read on the main thread
+	 * @return future completed on the main thread with the players
+	 */
+	public static CompletableFuture<Players> sample() {
+		WebConsole plugin = (WebConsole) Bukkit.getPluginManager().getPlugin("WebConsole");
+		return plugin.getMainThreadExecutor().submit(() -> {
+			List<String> connectedPlayersList = new ArrayList<String>();
+			for(Player player : Bukkit.getOnlinePlayers()) {
+				connectedPlayersList.add(player.getName());
+			}
+			
+			int connectedPlayers = connectedPlayersList.size();
+			int maxPlayers = Bukkit.getMaxPlayers();
+			
+			return new Players(
 				Internationalization.getPhrase("players-message", connectedPlayers, maxPlayers),
 				connectedPlayers,
 				maxPlayers,
 				connectedPlayersList
-			));
+			);
+		});
 	}
 	
 }
\ No newline at end of file
@@ -10,13 +10,14 @@ import org.bukkit.Bukkit;
 import org.java_websocket.WebSocket;
 
 import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.websocket.WSRequest;
 import es.mesacarlos.webconsole.websocket.WSServer;
 import es.mesacarlos.webconsole.websocket.response.ConsoleOutput;
 
 public class ReadLogFileCommand implements WSCommand{
 
 	@Override
-	public void execute(WSServer wsServer, WebSocket conn, String params) {
+	public void execute(WSServer wsServer, WebSocket conn, WSRequest request) {
 		List<String> lines = null;
 		try {
 			 lines = Files.readAllLines(Paths.get("logs/latest.log"), StandardCharsets.UTF_8);
@@ -35,7 +36,7 @@ public class ReadLogFileCommand implements WSCommand{
 		}
 		
 		for(String line : lines)
-			wsServer.sendToClient(conn, new ConsoleOutput(line, null));
+			wsServer.sendToClient(conn, request, new ConsoleOutput(line, null));
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package es.mesacarlos.webconsole.websocket.command;
+
+import org.bukkit.Bukkit;
+import org.java_websocket.WebSocket;
+
+import es.mesacarlos.webconsole.WebConsole;
+import es.mesacarlos.webconsole.auth.ConnectedUser;
+import es.mesacarlos.webconsole.auth.LoginManager;
+import es.mesacarlos.webconsole.config.UserType;
+import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.websocket.WSRequest;
+import es.mesacarlos.webconsole.websocket.WSServer;
+import es.mesacarlos.webconsole.websocket.response.Stats;
+
+public class StatsCommand implements WSCommand {
+
+	@Override
+	public void execute(WSServer wsServer, WebSocket conn, WSRequest request) {
+		ConnectedUser u = LoginManager.getInstance().getUser(conn);
+		if (u == null || u.getUserType() != UserType.ADMIN) {
+			if (u != null)
+				Bukkit.getLogger().warning(Internationalization.getPhrase("no-send-permission-console", u, "STATS"));
+			return;
+		}
+		
+		WebConsole plugin = (WebConsole) Bukkit.getPluginManager().getPlugin("WebConsole");
+		wsServer.sendToClient(conn, request, new Stats(Internationalization.getPhrase("stats-message", wsServer.getSendQueues().size()),
+				plugin.getConsoleBroadcaster(), wsServer.getSendQueues(), wsServer.getCommandExecutor(),
+				plugin.getMainThreadExecutor(), wsServer.getConnectionAdmission(), wsServer.getCommandRateLimiter()));
+	}
+
+}
@@ -0,0 +1,52 @@
+package es.mesacarlos.webconsole.websocket.command;
+
+import org.java_websocket.WebSocket;
+
+import es.mesacarlos.webconsole.util.Internationalization;
+import es.mesacarlos.webconsole.websocket.MetricsSampler;
+import es.mesacarlos.webconsole.websocket.WSRequest;
+import es.mesacarlos.webconsole.websocket.WSServer;
+import es.mesacarlos.webconsole.websocket.response.MetricsSubscribed;
+import es.mesacarlos.webconsole.websocket.response.UnknownCommand;
+
+/**
+ * Pushes players, CPU, RAM and TPS to the client in a single frame every interval, given in milliseconds,
+ * either as the params or as the interval property of a params object. 0 or empty params stop the metrics.
+ */
+public class SubscribeMetricsCommand implements WSCommand {
+	private static final String INTERVAL_PROPERTY = "interval";
+
+	@Override
+	public void execute(WSServer wsServer, WebSocket conn, WSRequest request) {
+		String param = request.getParamsObject() != null ? request.getParamString(INTERVAL_PROPERTY) : request.getParams().trim();
+		long interval;
+		try {
+			interval = param == null || param.isEmpty() ? 0 : Long.parseLong(param);
+			if (interval < 0)
+				throw new NumberFormatException();
+		} catch (NumberFormatException e) {
+			wsServer.sendToClient(conn, request, new UnknownCommand(Internationalization.getPhrase("metrics-subscribe-invalid", param), request.getMessage()));
+			return;
+		}
+
+		MetricsSampler sampler = wsServer.getMetricsSampler();
+		if (interval == 0) {
+			sampler.unsubscribe(conn);
+			wsServer.sendToClient(conn, request, new MetricsSubscribed(Internationalization.getPhrase("metrics-unsubscribe-message"), 0));
+			return;
+		}
+
+		// Answered before subscribing, so the first frame never arrives ahead of this response
+		interval = sampler.normalizeInterval(interval);
+		wsServer.sendToClient(conn, request, new MetricsSubscribed(Internationalization.getPhrase("metrics-subscribe-message", interval), interval));
+		sampler.subscribe(conn, interval);
+		if (!conn.isOpen())
+			sampler.unsubscribe(conn); // Closed meanwhile, after onClose cleaned up
+	}
+
+	@Override
+	public boolean isInline() {
+		return true; // Only registers the subscription
+	}
+
+}
@@ -10,6 +10,7 @@ package es.mesacarlos.webconsole.websocket.command;
 
 import es.mesacarlos.webconsole.util.Internationalization;
 import es.mesacarlos.webconsole.util.TpsTracker;
+import es.mesacarlos.webconsole.websocket.WSRequest;
 import es.mesacarlos.webconsole.websocket.WSServer;
 import es.mesacarlos.webconsole.websocket.response.Tps;
 import org.java_websocket.WebSocket;
@@ -23,15 +24,24 @@ public class TpsCommand implements WSCommand {
 	private static final String mcVer = Bukkit.getServer().getClass().getPackage().getName().split("\\.")[2];
 
 	@Override
-	public void execute(WSServer wsServer, WebSocket conn, String params) {
+	public void execute(WSServer wsServer, WebSocket conn, WSRequest request) {
 		try {
-			double tps = getTps()[0];
-			wsServer.sendToClient(conn, new Tps(Internationalization.getPhrase("tps-message", tps), tps));
+			wsServer.sendToClient(conn, request, sample());
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Builds the TPS response
+	 * @return TPS and tick durations
+	 */
+	public static Tps sample() {
+		TpsTracker.Snapshot snapshot = TpsTracker.snapshot();
+		double tps = Math.round(snapshot.getTps5s()); // Kept rounded, as clients have always received it
+		return new Tps(Internationalization.getPhrase("tps-message", tps), tps, snapshot);
+	}
+
 	/**
 	 * @return Current server Tps
 	 */
@@ -2,8 +2,19 @@ package es.mesacarlos.webconsole.websocket.command;
 
 import org.java_websocket.WebSocket;
 
+import es.mesacarlos.webconsole.websocket.WSRequest;
 import es.mesacarlos.webconsole.websocket.WSServer;
 
 public interface WSCommand {
-	void execute(WSServer wsServer, WebSocket conn, String params);
+	void execute(WSServer wsServer, WebSocket conn, WSRequest request);
+	
+	/**
+	 * Whether this command runs right away on the thread that received it, instead of on a command worker.
+	 * Inline commands change the connection state, so later requests of the same connection must see their effect.
+	 * They must be fast and never block.
+	 * @return true to run inline
+	 */
+	default boolean isInline() {
+		return false;
+	}
 }
\ No newline at end of file
@@ -16,11 +16,16 @@ public class WSCommandFactory {
 		HashMap<String, WSCommand> commands = new HashMap<String, WSCommand>();
 		commands.put("LOGIN", new LogInCommand());
 		commands.put("EXEC", new ExecCommand());
+		commands.put("EXEC_BATCH", new ExecBatchCommand());
 		commands.put("PLAYERS", new PlayersCommand());
 		commands.put("CPUUSAGE", new CpuUsageCommand());
 		commands.put("RAMUSAGE", new RamUsageCommand());
 		commands.put("TPS", new TpsCommand());
 		commands.put("READLOGFILE", new ReadLogFileCommand());
+		commands.put("STATS", new StatsCommand());
+		commands.put("CONSOLE_RESUME", new ConsoleResumeCommand());
+		commands.put("CONSOLE_SUBSCRIBE", new ConsoleSubscribeCommand());
+		commands.put("SUBSCRIBE_METRICS", new SubscribeMetricsCommand());
 		
 		// File Management Commands
 		commands.put("FILE_LIST", new FileListCommand());
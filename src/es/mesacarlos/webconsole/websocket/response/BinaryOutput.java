@@ -0,0 +1,309 @@
+package es.mesacarlos.webconsole.websocket.response;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of responses, used by clients negotiating the "webconsole.binary.v1" subprotocol.
+ * 
+ * A message is the status code as an unsigned varint, followed by its fields and an END (0) marker.
+ * A field is its varint ID, from the FIELDS table below, followed by a type-tagged value.
+ * Field names missing from the table are sent inline as ID 1 followed by the name as a string.
+ * statusDescription is never sent, since the status code already identifies the message.
+ * 
+ * Values start with a tag byte: STRING (varint byte length + UTF-8), INTEGER (zigzag varint),
+ * DOUBLE (8 bytes, big endian), TRUE, FALSE, NULL, ARRAY (varint count + values) and OBJECT (fields + END).
+ * 
+ * The FIELDS table is append-only: IDs never change, and new names are added at the end together with the JS connector.
+ */
+public class BinaryOutput {
+	public static final String PROTOCOL = "webconsole.binary.v1";
+
+	public static final int END = 0;
+	public static final int INLINE_FIELD = 1;
+
+	public static final byte STRING = 1;
+	public static final byte INTEGER = 2;
+	public static final byte DOUBLE = 3;
+	public static final byte TRUE = 4;
+	public static final byte FALSE = 5;
+	public static final byte NULL = 6;
+	public static final byte ARRAY = 7;
+	public static final byte OBJECT = 8;
+
+	// Field IDs start at 2, in this order. Keep in sync with API_js/WebConsoleConnector.js
+	private static final String[] FIELDS = { "message", "time", "seq", "lines", "respondsTo", "token", "username", "as",
+			"consoleBatch", "usage", "free", "used", "max", "tps", "connectedPlayers", "maxPlayers", "players", "files",
+			"currentPath", "path", "name", "content", "encoding", "size", "is_binary", "since", "lastSeq", "truncated",
+			"filter", "minLevel", "loggers", "include", "exclude", "console", "connections", "enqueued", "dropped",
+			"pending", "lagMillis", "maxLagMillis", "globalBufferedBytes", "address", "bufferedFrames", "bufferedBytes",
+			"pendingLines", "coalescedLines", "droppedLines", "droppedFrames", "compressed", "bytesBeforeCompression",
+			"bytesAfterCompression", "timestamp", "level", "logger", "thread", "thrown", "id", "inFlight",
+			"commands", "virtualThreads", "queued", "types", "command", "limit", "running", "completed", "rejected",
+			"avgWaitMillis", "maxWaitMillis", "mainThread", "budgetMillis", "executed", "overBudgetTicks", "carriedOverTicks",
+			"lastTickMillis", "maxTickMillis", "results", "result", "error", "success", "output",
+			"resumeToken", "retryAfterMillis", "admission", "open", "maxTotal", "maxPerAddress", "rejectedTotal",
+			"rejectedPerAddress", "rateLimits", "throttled",
+			"windows", "5s", "1m", "5m", "15m", "mspt", "min", "median", "p95", "p99", "ticks",
+			"status", "intervalMillis", "metrics", "more" };
+	private static final Map<String, Integer> FIELD_IDS = new HashMap<String, Integer>();
+	static {
+		for (int i = 0; i < FIELDS.length; i++)
+			FIELD_IDS.put(FIELDS[i], i + 2);
+	}
+
+	private byte[] buffer;
+	private int size;
+
+	/**
+	 * Starts a message
+	 * @param statusCode Status code of the response
+	 */
+	public BinaryOutput(int statusCode) {
+		buffer = new byte[128];
+		writeVarint(statusCode);
+	}
+
+	private BinaryOutput() {
+		buffer = new byte[32];
+	}
+
+	/**
+	 * Adds the id of the request an encoded response answers, as the first field after the status code
+	 * @param message Encoded response
+	 * @param id Request id
+	 * @return Encoded response with the id
+	 */
+	public static byte[] withId(byte[] message, String id) {
+		int header = 0;
+		while ((message[header++] & 0x80) != 0)
+			; // Skip the status code varint
+
+		BinaryOutput out = new BinaryOutput();
+		out.property(JSONOutput.ID_PROPERTY, id);
+		byte[] result = new byte[message.length + out.size];
+		System.arraycopy(message, 0, result, 0, header);
+		System.arraycopy(out.buffer, 0, result, header, out.size);
+		System.arraycopy(message, header, result, header + out.size, message.length - header);
+		return result;
+	}
+
+	/**
+	 * Writes a field name, to be followed by exactly one value
+	 * @param name Field name
+	 * @return this
+	 */
+	public BinaryOutput field(String name) {
+		Integer id = FIELD_IDS.get(name);
+		if (id != null) {
+			writeVarint(id);
+		} else {
+			writeVarint(INLINE_FIELD);
+			writeUtf8(name);
+		}
+		return this;
+	}
+
+	public BinaryOutput value(String value) {
+		if (value == null)
+			return nullValue();
+		writeByte(STRING);
+		writeUtf8(value);
+		return this;
+	}
+
+	/**
+	 * Writes a string value, encoding it to UTF-8 as its characters are produced
+	 * @param value Value
+	 * @return this
+	 */
+	public BinaryOutput value(StreamedString value) {
+		writeByte(STRING);
+		int lengthStart = size;
+		ensureCapacity(5); // Room for the longest length varint, so the bytes only move back once they are written
+		size += 5;
+		int start = size;
+		Utf8Writer utf8 = new Utf8Writer();
+		try {
+			value.writeTo(utf8);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		utf8.finish();
+		int length = size - start;
+
+		size = lengthStart;
+		writeVarint(length);
+		System.arraycopy(buffer, start, buffer, size, length);
+		size += length;
+		return this;
+	}
+
+	public BinaryOutput value(long value) {
+		writeByte(INTEGER);
+		writeVarint((value << 1) ^ (value >> 63));
+		return this;
+	}
+
+	public BinaryOutput value(double value) {
+		if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1L << 53)
+			return value((long) value); // Whole numbers are shorter as varints
+		writeByte(DOUBLE);
+		long bits = Double.doubleToLongBits(value);
+		for (int shift = 56; shift >= 0; shift -= 8)
+			writeByte((byte) (bits >>> shift));
+		return this;
+	}
+
+	public BinaryOutput value(boolean value) {
+		writeByte(value ? TRUE : FALSE);
+		return this;
+	}
+
+	public BinaryOutput nullValue() {
+		writeByte(NULL);
+		return this;
+	}
+
+	/**
+	 * Starts an array. It must be followed by exactly count values.
+	 * @param count Number of elements
+	 * @return this
+	 */
+	public BinaryOutput beginArray(int count) {
+		writeByte(ARRAY);
+		writeVarint(count);
+		return this;
+	}
+
+	/**
+	 * Starts a nested object. It must be closed with endObject().
+	 * @return this
+	 */
+	public BinaryOutput beginObject() {
+		writeByte(OBJECT);
+		return this;
+	}
+
+	public BinaryOutput endObject() {
+		writeVarint(END);
+		return this;
+	}
+
+	public BinaryOutput property(String name, String value) {
+		return field(name).value(value);
+	}
+
+	public BinaryOutput property(String name, StreamedString value) {
+		return field(name).value(value);
+	}
+
+	public BinaryOutput property(String name, long value) {
+		return field(name).value(value);
+	}
+
+	public BinaryOutput property(String name, double value) {
+		return field(name).value(value);
+	}
+
+	public BinaryOutput property(String name, boolean value) {
+		return field(name).value(value);
+	}
+
+	/**
+	 * Ends the message
+	 * @return the encoded message
+	 */
+	public byte[] toByteArray() {
+		writeVarint(END);
+		return Arrays.copyOf(buffer, size);
+	}
+
+	private void writeUtf8(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarint(bytes.length);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, size, bytes.length);
+		size += bytes.length;
+	}
+
+	private void writeVarint(long value) {
+		while ((value & ~0x7FL) != 0) {
+			writeByte((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		writeByte((byte) value);
+	}
+
+	private void writeByte(byte value) {
+		ensureCapacity(1);
+		buffer[size++] = value;
+	}
+
+	private void ensureCapacity(int extra) {
+		if (size + extra > buffer.length)
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+	}
+
+	/**
+	 * Encodes characters to UTF-8 at the end of the buffer. Unpaired surrogates become '?', as with String.getBytes.
+	 */
+	private final class Utf8Writer extends Writer {
+		private char highSurrogate; // Waiting for the low surrogate of the next call, or 0
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			ensureCapacity(len * 3 + 1); // A pending high surrogate can turn into 4 bytes with the first char
+			for (int i = off; i < off + len; i++) {
+				char c = cbuf[i];
+				if (highSurrogate != 0) {
+					char high = highSurrogate;
+					highSurrogate = 0;
+					if (Character.isLowSurrogate(c)) {
+						int codePoint = Character.toCodePoint(high, c);
+						buffer[size++] = (byte) (0xF0 | codePoint >> 18);
+						buffer[size++] = (byte) (0x80 | (codePoint >> 12 & 0x3F));
+						buffer[size++] = (byte) (0x80 | (codePoint >> 6 & 0x3F));
+						buffer[size++] = (byte) (0x80 | (codePoint & 0x3F));
+						continue;
+					}
+					buffer[size++] = '?';
+				}
+				if (c < 0x80) {
+					buffer[size++] = (byte) c;
+				} else if (c < 0x800) {
+					buffer[size++] = (byte) (0xC0 | c >> 6);
+					buffer[size++] = (byte) (0x80 | (c & 0x3F));
+				} else if (Character.isHighSurrogate(c)) {
+					highSurrogate = c;
+				} else if (Character.isLowSurrogate(c)) {
+					buffer[size++] = '?';
+				} else {
+					buffer[size++] = (byte) (0xE0 | c >> 12);
+					buffer[size++] = (byte) (0x80 | (c >> 6 & 0x3F));
+					buffer[size++] = (byte) (0x80 | (c & 0x3F));
+				}
+			}
+		}
+
+		void finish() {
+			if (highSurrogate != 0) {
+				writeByte((byte) '?');
+				highSurrogate = 0;
+			}
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package es.mesacarlos.webconsole.websocket.response;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.google.gson.stream.JsonWriter;
+
+public class CommandOutput implements JSONOutput {
+
+	private final String message;
+	private final String command;
+	private final boolean success;
+	private final List<String> output;
+	
+	public CommandOutput(String message, String command, boolean success, List<String> output) {
+		this.message = message;
+		this.command = command;
+		this.success = success;
+		this.output = output;
+	}
+	
+	@Override
+	public int getStatusCode() {
+		return 15;
+	}
+
+	@Override
+	public String getMessage() {
+		return message;
+	}
+	
+	public String getCommand() {
+		return command;
+	}
+	
+	/**
+	 * Whether the server found a handler for the command
+	 * @return false if the command is unknown
+	 */
+	public boolean isSuccess() {
+		return success;
+	}
+	
+	/**
+	 * Messages the command sent back to the console sender while it ran
+	 * @return output lines, in order
+	 */
+	public List<String> getOutput() {
+		return output;
+	}
+
+	/**
+	 * Writes output lines as an "output" array of strings
+	 * @param writer JSON object being written
+	 * @param output Output lines
+	 * @throws IOException if the underlying writer fails
+	 */
+	static void writeOutput(JsonWriter writer, List<String> output) throws IOException {
+		writer.name("output").beginArray();
+		for (String line : output)
+			writer.value(line);
+		writer.endArray();
+	}
+
+	/**
+	 * Binary counterpart of {@link #writeOutput(JsonWriter, List)}
+	 * @param out Binary message being built
+	 * @param output Output lines
+	 */
+	static void writeOutput(BinaryOutput out, List<String> output) {
+		out.field("output").beginArray(output.size());
+		for (String line : output)
+			out.value(line);
+	}
+
+	@Override
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("Command Output");
+		writer.name("command").value(getCommand());
+		writer.name("success").value(isSuccess());
+		writeOutput(writer, output);
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		out.property("command", getCommand());
+		out.property("success", isSuccess());
+		writeOutput(out, output);
+		out.property("message", getMessage());
+	}
+
+}
@@ -0,0 +1,127 @@
+package es.mesacarlos.webconsole.websocket.response;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.google.gson.stream.JsonWriter;
+
+import es.mesacarlos.webconsole.console.ConsoleLine;
+import es.mesacarlos.webconsole.util.DateTimeUtils;
+
+public class ConsoleBatch implements JSONOutput {
+
+	private final String message;
+	private final List<ConsoleLine> lines;
+	
+	public ConsoleBatch(String message, List<ConsoleLine> lines) {
+		this.message = message;
+		this.lines = lines;
+	}
+	
+	@Override
+	public int getStatusCode() {
+		return 11;
+	}
+
+	@Override
+	public String getMessage() {
+		return message;
+	}
+	
+	/**
+	 * Console lines coalesced in this batch, oldest first
+	 * @return console lines
+	 */
+	public List<ConsoleLine> getLines() {
+		return lines;
+	}
+
+	/**
+	 * Writes console lines as a "lines" array of {seq, time, timestamp, level, logger, thread, thrown, message} objects
+	 * @param writer JSON object being written
+	 * @param lines Console lines
+	 * @throws IOException if the underlying writer fails
+	 */
+	static void writeLines(JsonWriter writer, List<ConsoleLine> lines) throws IOException {
+		writer.name("lines").beginArray();
+		for (ConsoleLine line : lines) {
+			writer.beginObject();
+			writer.name("seq").value(line.getSequence());
+			writer.name("time").value(DateTimeUtils.getTimeAsString(line.getTimestamp()));
+			writeEventFields(writer, line);
+			writer.name("message").value(line.getMessage());
+			writer.endObject();
+		}
+		writer.endArray();
+	}
+
+	/**
+	 * Writes console lines as an array of {seq, time, timestamp, level, logger, thread, thrown, message} objects
+	 * @param out Binary message being built
+	 * @param lines Console lines
+	 */
+	static void writeLines(BinaryOutput out, List<ConsoleLine> lines) {
+		out.field("lines").beginArray(lines.size());
+		for (ConsoleLine line : lines) {
+			out.beginObject();
+			out.property("seq", line.getSequence());
+			out.property("time", DateTimeUtils.getTimeAsString(line.getTimestamp()));
+			writeEventFields(out, line);
+			out.property("message", line.getMessage());
+			out.endObject();
+		}
+	}
+
+	/**
+	 * Writes the log event metadata of a line: epoch millis timestamp, level, logger and thread names,
+	 * and thrown when the event carried an exception. Unknown values are left out.
+	 * @param writer JSON object of the line
+	 * @param line Console line
+	 * @throws IOException if the underlying writer fails
+	 */
+	static void writeEventFields(JsonWriter writer, ConsoleLine line) throws IOException {
+		writer.name("timestamp").value(line.getTimestamp());
+		if (line.getLevel() != null)
+			writer.name("level").value(line.getLevel().name());
+		if (line.getLoggerName() != null)
+			writer.name("logger").value(line.getLoggerName());
+		if (line.getThreadName() != null)
+			writer.name("thread").value(line.getThreadName());
+		if (line.isThrown())
+			writer.name("thrown").value(true);
+	}
+
+	/**
+	 * Binary counterpart of {@link #writeEventFields(JsonWriter, ConsoleLine)}
+	 * @param out Binary message being built
+	 * @param line Console line
+	 */
+	static void writeEventFields(BinaryOutput out, ConsoleLine line) {
+		out.property("timestamp", line.getTimestamp());
+		if (line.getLevel() != null)
+			out.property("level", line.getLevel().name());
+		if (line.getLoggerName() != null)
+			out.property("logger", line.getLoggerName());
+		if (line.getThreadName() != null)
+			out.property("thread", line.getThreadName());
+		if (line.isThrown())
+			out.property("thrown", true);
+	}
+
+	@Override
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("Console Batch");
+		writeLines(writer, lines);
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+	
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		writeLines(out, lines);
+		out.property("message", getMessage());
+	}
+
+}
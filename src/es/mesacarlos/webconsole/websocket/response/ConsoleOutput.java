@@ -1,17 +1,38 @@
 package es.mesacarlos.webconsole.websocket.response;
 
-import com.google.gson.JsonObject;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
+
+import es.mesacarlos.webconsole.console.ConsoleLine;
+import es.mesacarlos.webconsole.util.DateTimeUtils;
 
 public class ConsoleOutput implements JSONOutput {
 
 	private final String message;
 	private final String time;
+	private long sequence;
+	private ConsoleLine line;
 	
 	public ConsoleOutput(String message, String time) {
 		this.message = message;
 		this.time = time;
 	}
 	
+	public ConsoleOutput(String message, String time, long sequence) {
+		this(message, time);
+		this.sequence = sequence;
+	}
+	
+	/**
+	 * Builds the output of a live console line, including the metadata of its log event
+	 * @param line Console line
+	 */
+	public ConsoleOutput(ConsoleLine line) {
+		this(line.getMessage(), DateTimeUtils.getTimeAsString(line.getTimestamp()), line.getSequence());
+		this.line = line;
+	}
+	
 	@Override
 	public int getStatusCode() {
 		return 10;
@@ -25,15 +46,37 @@ public class ConsoleOutput implements JSONOutput {
 	public String getTime() {
 		return time;
 	}
+	
+	/**
+	 * Sequence number of this line, used by clients to resume the console after reconnecting
+	 * @return sequence number, 0 if this line is not part of the live console stream
+	 */
+	public long getSequence() {
+		return sequence;
+	}
 
 	@Override
-	public String toJSON() {
-		JsonObject object = new JsonObject();
-		object.addProperty("status", getStatusCode());
-		object.addProperty("statusDescription", "Console Output");
-		object.addProperty("time", getTime());
-		object.addProperty("message", getMessage());
-		return object.toString();
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("Console Output");
+		writer.name("time").value(getTime());
+		if (getSequence() > 0)
+			writer.name("seq").value(getSequence());
+		if (line != null)
+			ConsoleBatch.writeEventFields(writer, line);
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+	
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		out.property("time", getTime());
+		if (getSequence() > 0)
+			out.property("seq", getSequence());
+		if (line != null)
+			ConsoleBatch.writeEventFields(out, line);
+		out.property("message", getMessage());
 	}
 
-}
\ No newline at end of file
+}
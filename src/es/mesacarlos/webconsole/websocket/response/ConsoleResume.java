@@ -0,0 +1,98 @@
+package es.mesacarlos.webconsole.websocket.response;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.google.gson.stream.JsonWriter;
+
+import es.mesacarlos.webconsole.console.ConsoleLine;
+
+public class ConsoleResume implements JSONOutput {
+
+	private final String message;
+	private final long since;
+	private final long lastSequence;
+	private final boolean truncated;
+	private final boolean more;
+	private final List<ConsoleLine> lines;
+	
+	public ConsoleResume(String message, long since, long lastSequence, boolean truncated, boolean more, List<ConsoleLine> lines) {
+		this.message = message;
+		this.since = since;
+		this.lastSequence = lastSequence;
+		this.truncated = truncated;
+		this.more = more;
+		this.lines = lines;
+	}
+	
+	@Override
+	public int getStatusCode() {
+		return 12;
+	}
+
+	@Override
+	public String getMessage() {
+		return message;
+	}
+	
+	/**
+	 * Last sequence number the client had seen. 0 if it had seen lines of a previous server start.
+	 * @return requested sequence
+	 */
+	public long getSince() {
+		return since;
+	}
+	
+	/**
+	 * Sequence number of the newest line in this response. Newer lines arrive through the live console stream.
+	 * @return last sequence
+	 */
+	public long getLastSequence() {
+		return lastSequence;
+	}
+	
+	/**
+	 * Whether some of the missed lines are no longer in the scrollback. Clients should fall back to READLOGFILE.
+	 * @return true if the gap could not be fully filled
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+	
+	/**
+	 * Whether the missed lines did not fit in a single response. Clients ask for the rest with CONSOLE_RESUME from lastSeq.
+	 * @return true if there are more missed lines
+	 */
+	public boolean hasMore() {
+		return more;
+	}
+	
+	public List<ConsoleLine> getLines() {
+		return lines;
+	}
+
+	@Override
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("Console Resume");
+		writer.name("since").value(getSince());
+		writer.name("lastSeq").value(getLastSequence());
+		writer.name("truncated").value(isTruncated());
+		writer.name("more").value(hasMore());
+		ConsoleBatch.writeLines(writer, lines);
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+	
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		out.property("since", getSince());
+		out.property("lastSeq", getLastSequence());
+		out.property("truncated", isTruncated());
+		out.property("more", hasMore());
+		ConsoleBatch.writeLines(out, lines);
+		out.property("message", getMessage());
+	}
+
+}
@@ -0,0 +1,59 @@
+package es.mesacarlos.webconsole.websocket.response;
+
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
+
+import es.mesacarlos.webconsole.console.ConsoleFilter;
+
+public class ConsoleSubscribed implements JSONOutput {
+
+	private final String message;
+	private final ConsoleFilter filter;
+	
+	public ConsoleSubscribed(String message, ConsoleFilter filter) {
+		this.message = message;
+		this.filter = filter;
+	}
+	
+	@Override
+	public int getStatusCode() {
+		return 13;
+	}
+
+	@Override
+	public String getMessage() {
+		return message;
+	}
+	
+	/**
+	 * Filter now applied to the console lines sent to the client
+	 * @return filter, or null if the client receives every line
+	 */
+	public ConsoleFilter getFilter() {
+		return filter;
+	}
+
+	@Override
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("Console Subscribed");
+		if (getFilter() != null) {
+			writer.name("filter");
+			getFilter().writeJson(writer);
+		}
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		if (getFilter() != null) {
+			out.field("filter");
+			getFilter().writeBinary(out);
+		}
+		out.property("message", getMessage());
+	}
+
+}
@@ -1,8 +1,10 @@
 package es.mesacarlos.webconsole.websocket.response;
 
-import com.google.gson.JsonObject;
+import java.io.IOException;
 
-public class CpuUsage implements JSONOutput {
+import com.google.gson.stream.JsonWriter;
+
+public class CpuUsage implements MetricsOutput {
 
 	private final String message;
 	private final double usage;
@@ -31,13 +33,19 @@ public class CpuUsage implements JSONOutput {
 	}
 	
 	@Override
-	public String toJSON() {
-		JsonObject object = new JsonObject();
-		object.addProperty("status", getStatusCode());
-		object.addProperty("statusDescription", "CPU Usage");
-		object.addProperty("usage", getUsage());
-		object.addProperty("message", getMessage());
-		return object.toString();
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("CPU Usage");
+		writer.name("usage").value(getUsage());
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+	
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		out.property("usage", getUsage());
+		out.property("message", getMessage());
 	}
 	
 }
\ No newline at end of file
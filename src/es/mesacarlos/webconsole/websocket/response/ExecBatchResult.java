@@ -0,0 +1,96 @@
+package es.mesacarlos.webconsole.websocket.response;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.google.gson.stream.JsonWriter;
+
+public class ExecBatchResult implements JSONOutput {
+	public static final String EXECUTED = "EXECUTED"; // Run by the server
+	public static final String UNKNOWN = "UNKNOWN"; // Run, but no plugin handled it
+	public static final String ERROR = "ERROR"; // Failed with an exception
+	public static final String DENIED = "DENIED"; // Not allowed by the whitelist
+	public static final String SKIPPED = "SKIPPED"; // Not run because another command of the batch was denied
+
+	private final String message;
+	private final List<String> commands;
+	private final List<String> results;
+	private final List<String> errors;
+	private final List<List<String>> outputs;
+	private final int executed;
+	
+	/**
+	 * @param message Explanatory message
+	 * @param commands Commands of the batch, in order
+	 * @param results Result of each command
+	 * @param errors Error message of each command, null where there is none. Can be null if no command ran.
+	 * @param outputs Output of each command. Can be null if no command ran.
+	 * @param executed Amount of commands run
+	 */
+	public ExecBatchResult(String message, List<String> commands, List<String> results, List<String> errors, List<List<String>> outputs, int executed) {
+		this.message = message;
+		this.commands = commands;
+		this.results = results;
+		this.errors = errors;
+		this.outputs = outputs;
+		this.executed = executed;
+	}
+	
+	@Override
+	public int getStatusCode() {
+		return 14;
+	}
+
+	@Override
+	public String getMessage() {
+		return message;
+	}
+	
+	/**
+	 * Amount of commands of the batch that were run
+	 * @return executed commands
+	 */
+	public int getExecuted() {
+		return executed;
+	}
+
+	@Override
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("Exec Batch");
+		writer.name("executed").value(getExecuted());
+		writer.name("results").beginArray();
+		for (int i = 0; i < commands.size(); i++) {
+			writer.beginObject();
+			writer.name("command").value(commands.get(i));
+			writer.name("result").value(results.get(i));
+			if (errors != null && errors.get(i) != null)
+				writer.name("error").value(errors.get(i));
+			if (outputs != null)
+				CommandOutput.writeOutput(writer, outputs.get(i));
+			writer.endObject();
+		}
+		writer.endArray();
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		out.property("executed", getExecuted());
+		out.field("results").beginArray(commands.size());
+		for (int i = 0; i < commands.size(); i++) {
+			out.beginObject();
+			out.property("command", commands.get(i));
+			out.property("result", results.get(i));
+			if (errors != null && errors.get(i) != null)
+				out.property("error", errors.get(i));
+			if (outputs != null)
+				CommandOutput.writeOutput(out, outputs.get(i));
+			out.endObject();
+		}
+		out.property("message", getMessage());
+	}
+
+}
@@ -1,15 +1,25 @@
 package es.mesacarlos.webconsole.websocket.response.FileManagement;
 
-import com.google.gson.Gson;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
+
+import es.mesacarlos.webconsole.websocket.response.BinaryOutput;
+import es.mesacarlos.webconsole.websocket.response.ResponseWriter;
+import es.mesacarlos.webconsole.websocket.response.StreamedString;
 
 public class FileDownloadResponse implements es.mesacarlos.webconsole.websocket.response.JSONOutput {
-    private static final Gson gson = new Gson();
-    
     private final int status = 2003;
     private final String message = "File download ready";
-    private final String content;
+    private final String filename;
+    private final String path;
+    private final long size;
+    private final byte[] content;
 
-    public FileDownloadResponse(String content) {
+    public FileDownloadResponse(String filename, String path, long size, byte[] content) {
+        this.filename = filename;
+        this.path = path;
+        this.size = size;
         this.content = content;
     }
 
@@ -24,11 +34,36 @@ public class FileDownloadResponse implements es.mesacarlos.webconsole.websocket.
     }
 
     @Override
-    public String toJSON() {
-        com.google.gson.JsonObject jsonObj = new com.google.gson.JsonObject();
-        jsonObj.addProperty("status", status);
-        jsonObj.addProperty("message", message);
-        jsonObj.addProperty("content", content);
-        return gson.toJson(jsonObj);
+    public void writeJSON(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("status").value(status);
+        writer.name("message").value(message);
+        writer.name("content");
+        ResponseWriter.value(writer, document());
+        writer.endObject();
+    }
+
+    @Override
+    public void writeBinary(BinaryOutput out) {
+        out.property("message", message);
+        out.property("content", document());
+    }
+
+    /**
+     * The content is a JSON document in a string, as the dashboard expects. It is written straight into the response,
+     * with the file encoded as base64 a chunk at a time.
+     */
+    private StreamedString document() {
+        return out -> {
+            JsonWriter document = ResponseWriter.newJsonWriter(out);
+            document.beginObject();
+            document.name("filename").value(filename);
+            document.name("path").value(path);
+            document.name("size").value(size);
+            document.name("content");
+            ResponseWriter.value(document, StreamedString.base64(content));
+            document.endObject();
+            document.flush();
+        };
     }
 }
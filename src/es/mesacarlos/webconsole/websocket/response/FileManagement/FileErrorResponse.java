@@ -1,10 +1,12 @@
 package es.mesacarlos.webconsole.websocket.response.FileManagement;
 
-import com.google.gson.Gson;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
+
+import es.mesacarlos.webconsole.websocket.response.BinaryOutput;
 
 public class FileErrorResponse implements es.mesacarlos.webconsole.websocket.response.JSONOutput {
-    private static final Gson gson = new Gson();
-    
     private final int status;
     private final String message;
 
@@ -24,10 +26,15 @@ public class FileErrorResponse implements es.mesacarlos.webconsole.websocket.res
     }
 
     @Override
-    public String toJSON() {
-        com.google.gson.JsonObject jsonObj = new com.google.gson.JsonObject();
-        jsonObj.addProperty("status", status);
-        jsonObj.addProperty("message", message);
-        return gson.toJson(jsonObj);
+    public void writeJSON(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("status").value(status);
+        writer.name("message").value(message);
+        writer.endObject();
+    }
+
+    @Override
+    public void writeBinary(BinaryOutput out) {
+        out.property("message", message);
     }
 }
@@ -1,10 +1,12 @@
 package es.mesacarlos.webconsole.websocket.response.FileManagement;
 
-import com.google.gson.Gson;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
+
+import es.mesacarlos.webconsole.websocket.response.BinaryOutput;
 
 public class FileListResponse implements es.mesacarlos.webconsole.websocket.response.JSONOutput {
-    private static final Gson gson = new Gson();
-    
     private final int status = 2000;
     private final String message = "File list retrieved successfully";
     private final String files;
@@ -26,12 +28,19 @@ public class FileListResponse implements es.mesacarlos.webconsole.websocket.resp
     }
 
     @Override
-    public String toJSON() {
-        com.google.gson.JsonObject jsonObj = new com.google.gson.JsonObject();
-        jsonObj.addProperty("status", status);
-        jsonObj.addProperty("message", message);
-        jsonObj.addProperty("files", files);
-        jsonObj.addProperty("currentPath", currentPath);
-        return gson.toJson(jsonObj);
+    public void writeJSON(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("status").value(status);
+        writer.name("message").value(message);
+        writer.name("files").value(files);
+        writer.name("currentPath").value(currentPath);
+        writer.endObject();
+    }
+
+    @Override
+    public void writeBinary(BinaryOutput out) {
+        out.property("message", message);
+        out.property("files", files);
+        out.property("currentPath", currentPath);
     }
 }
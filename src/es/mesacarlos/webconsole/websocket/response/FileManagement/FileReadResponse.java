@@ -1,32 +1,30 @@
 package es.mesacarlos.webconsole.websocket.response.FileManagement;
 
-import com.google.gson.Gson;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
+
+import es.mesacarlos.webconsole.websocket.response.BinaryOutput;
+import es.mesacarlos.webconsole.websocket.response.ResponseWriter;
+import es.mesacarlos.webconsole.websocket.response.StreamedString;
 
 public class FileReadResponse implements es.mesacarlos.webconsole.websocket.response.JSONOutput {
-    private static final Gson gson = new Gson();
-    
     private final int status = 2001;
     private final String message = "File content retrieved successfully";
     private final String path;
     private final String name;
-    private final String content;
+    private final StreamedString content;
     private final String encoding;
     private final long size;
     private final boolean isBinary;
 
-    public FileReadResponse(String content) {
-        this.path = "";
-        this.name = "";
-        this.content = content;
-        this.encoding = "base64";
-        this.size = 0;
-        this.isBinary = false;
-    }
-
-    public FileReadResponse(String path, String name, String content, String encoding, long size, boolean isBinary) {
+    /**
+     * @param content Raw file content, sent as base64 for binary files and as text otherwise
+     */
+    public FileReadResponse(String path, String name, byte[] content, String encoding, long size, boolean isBinary) {
         this.path = path;
         this.name = name;
-        this.content = content;
+        this.content = isBinary ? StreamedString.base64(content) : StreamedString.utf8(content);
         this.encoding = encoding;
         this.size = size;
         this.isBinary = isBinary;
@@ -43,16 +41,28 @@ public class FileReadResponse implements es.mesacarlos.webconsole.websocket.resp
     }
 
     @Override
-    public String toJSON() {
-        com.google.gson.JsonObject jsonObj = new com.google.gson.JsonObject();
-        jsonObj.addProperty("status", status);
-        jsonObj.addProperty("message", message);
-        jsonObj.addProperty("path", path);
-        jsonObj.addProperty("name", name);
-        jsonObj.addProperty("content", content);
-        jsonObj.addProperty("encoding", encoding);
-        jsonObj.addProperty("size", size);
-        jsonObj.addProperty("is_binary", isBinary);
-        return gson.toJson(jsonObj);
+    public void writeJSON(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("status").value(status);
+        writer.name("message").value(message);
+        writer.name("path").value(path);
+        writer.name("name").value(name);
+        writer.name("content");
+        ResponseWriter.value(writer, content);
+        writer.name("encoding").value(encoding);
+        writer.name("size").value(size);
+        writer.name("is_binary").value(isBinary);
+        writer.endObject();
+    }
+
+    @Override
+    public void writeBinary(BinaryOutput out) {
+        out.property("message", message);
+        out.property("path", path);
+        out.property("name", name);
+        out.property("content", content);
+        out.property("encoding", encoding);
+        out.property("size", size);
+        out.property("is_binary", isBinary);
     }
 }
@@ -1,6 +1,15 @@
 package es.mesacarlos.webconsole.websocket.response;
 
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
+
 public interface JSONOutput {
+	/**
+	 * Property echoing the id of the request a response answers, if the client sent one
+	 */
+	String ID_PROPERTY = "id";
+	
 	/**
 	 * Gets status code representing this message. See docs for code meanings.
 	 * @return Status code representing this message
@@ -13,9 +22,35 @@ public interface JSONOutput {
 	 */
 	String getMessage();
 	
+	/**
+	 * Writes this object as a JSON object, field by field, without building an intermediate tree
+	 * @param writer Writer receiving the object
+	 * @throws IOException if the underlying writer fails
+	 */
+	void writeJSON(JsonWriter writer) throws IOException;
+	
 	/**
 	 * Coverts this object into JSON, ready to send it over WS
 	 * @return JSON Object Stringified
 	 */
-	String toJSON();
+	default String toJSON() {
+		return ResponseWriter.toJSON(this);
+	}
+	
+	/**
+	 * Writes the fields of this object into a binary message, in the same order as {@link #writeJSON(JsonWriter)}.
+	 * status and statusDescription are left out, as the status code already starts the message.
+	 * @param out Binary message being built
+	 */
+	void writeBinary(BinaryOutput out);
+	
+	/**
+	 * Converts this object into the compact binary encoding, for clients using the binary subprotocol
+	 * @return Encoded message
+	 */
+	default byte[] toBinary() {
+		BinaryOutput out = new BinaryOutput(getStatusCode());
+		writeBinary(out);
+		return out.toByteArray();
+	}
 }
\ No newline at end of file
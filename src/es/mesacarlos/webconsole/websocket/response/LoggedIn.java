@@ -1,6 +1,8 @@
 package es.mesacarlos.webconsole.websocket.response;
 
-import com.google.gson.JsonObject;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
 
 import es.mesacarlos.webconsole.config.UserType;
 
@@ -11,6 +13,8 @@ public class LoggedIn implements JSONOutput {
 	private String username;
 	private UserType as;
 	private String token;
+	private boolean consoleBatch;
+	private String resumeToken;
 	
 	public LoggedIn(String message) {
 		this.message = message;
@@ -24,6 +28,16 @@ public class LoggedIn implements JSONOutput {
 		this.token = token;
 	}
 	
+	public LoggedIn(String message, String respondsTo, String username, UserType as, String token, boolean consoleBatch) {
+		this(message, respondsTo, username, as, token);
+		this.consoleBatch = consoleBatch;
+	}
+	
+	public LoggedIn(String message, String respondsTo, String username, UserType as, String token, boolean consoleBatch, String resumeToken) {
+		this(message, respondsTo, username, as, token, consoleBatch);
+		this.resumeToken = resumeToken;
+	}
+	
 	@Override
 	public int getStatusCode() {
 		return 200;
@@ -60,17 +74,48 @@ public class LoggedIn implements JSONOutput {
 		return token;
 	}
 	
+	/**
+	 * Whether console lines will be sent coalesced in CONSOLE_BATCH frames
+	 * @return true if batched mode was accepted
+	 */
+	public boolean isConsoleBatch() {
+		return consoleBatch;
+	}
+	
+	/**
+	 * Signed token the client can present when reconnecting to restore this session without logging in
+	 * @return resume token, null if resuming is disabled
+	 */
+	private String getResumeToken() {
+		return resumeToken;
+	}
+	
+	@Override
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("LoggedIn");
+		writer.name("respondsTo").value(getRespondsTo());
+		writer.name("username").value(getUsername());
+		writer.name("as").value(getAs());
+		writer.name("token").value(getToken());
+		writer.name("consoleBatch").value(isConsoleBatch());
+		if (getResumeToken() != null)
+			writer.name("resumeToken").value(getResumeToken());
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+
 	@Override
-	public String toJSON() {
-		JsonObject object = new JsonObject();
-		object.addProperty("status", getStatusCode());
-		object.addProperty("statusDescription", "LoggedIn");
-		object.addProperty("respondsTo", getRespondsTo());
-		object.addProperty("username", getUsername());
-		object.addProperty("as", getAs());
-		object.addProperty("token", getToken());
-		object.addProperty("message", getMessage());
-		return object.toString();
+	public void writeBinary(BinaryOutput out) {
+		out.property("respondsTo", getRespondsTo());
+		out.property("username", getUsername());
+		out.property("as", getAs());
+		out.property("token", getToken());
+		out.property("consoleBatch", isConsoleBatch());
+		if (getResumeToken() != null)
+			out.property("resumeToken", getResumeToken());
+		out.property("message", getMessage());
 	}
 
 }
\ No newline at end of file
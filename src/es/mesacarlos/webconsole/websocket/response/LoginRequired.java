@@ -1,6 +1,8 @@
 package es.mesacarlos.webconsole.websocket.response;
 
-import com.google.gson.JsonObject;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
 
 public class LoginRequired implements JSONOutput {
 
@@ -21,12 +23,17 @@ public class LoginRequired implements JSONOutput {
 	}
 
 	@Override
-	public String toJSON() {
-		JsonObject object = new JsonObject();
-		object.addProperty("status", getStatusCode());
-		object.addProperty("statusDescription", "Login Required");
-		object.addProperty("message", getMessage());
-		return object.toString();
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("Login Required");
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		out.property("message", getMessage());
 	}
 
 }
\ No newline at end of file
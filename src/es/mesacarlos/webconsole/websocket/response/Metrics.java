@@ -0,0 +1,73 @@
+package es.mesacarlos.webconsole.websocket.response;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Every server metric in a single frame, pushed to the clients subscribed with SUBSCRIBE_METRICS.
+ * Each element of metrics is the same object the PLAYERS, CPUUSAGE, RAMUSAGE and TPS commands answer.
+ */
+public class Metrics implements MetricsOutput {
+
+	private final String message;
+	private final long intervalMillis;
+	private final List<MetricsOutput> metrics;
+
+	public Metrics(String message, long intervalMillis, List<MetricsOutput> metrics) {
+		this.message = message;
+		this.intervalMillis = intervalMillis;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public int getStatusCode() {
+		return 1005;
+	}
+
+	@Override
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * Time between two frames, in milliseconds
+	 * @return sampling interval
+	 */
+	public long getIntervalMillis() {
+		return intervalMillis;
+	}
+
+	public List<MetricsOutput> getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("Metrics");
+		writer.name("intervalMillis").value(getIntervalMillis());
+		writer.name("metrics").beginArray();
+		for (MetricsOutput metric : metrics)
+			metric.writeJSON(writer);
+		writer.endArray();
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		out.property("intervalMillis", getIntervalMillis());
+		out.field("metrics").beginArray(metrics.size());
+		for (MetricsOutput metric : metrics) {
+			// Nested metrics keep their status, like the top level one of a binary message
+			out.beginObject().property("status", metric.getStatusCode());
+			metric.writeBinary(out);
+			out.endObject();
+		}
+		out.property("message", getMessage());
+	}
+
+}
@@ -0,0 +1,7 @@
+package es.mesacarlos.webconsole.websocket.response;
+
+/**
+ * Marks periodic metrics responses. These are the first frames dropped for a client that cannot keep up.
+ */
+public interface MetricsOutput extends JSONOutput {
+}
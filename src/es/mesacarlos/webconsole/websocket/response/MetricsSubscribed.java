@@ -0,0 +1,51 @@
+package es.mesacarlos.webconsole.websocket.response;
+
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
+
+public class MetricsSubscribed implements JSONOutput {
+
+	private final String message;
+	private final long intervalMillis;
+
+	public MetricsSubscribed(String message, long intervalMillis) {
+		this.message = message;
+		this.intervalMillis = intervalMillis;
+	}
+
+	@Override
+	public int getStatusCode() {
+		return 16;
+	}
+
+	@Override
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * Interval the metrics will be sent at, after applying the server limits
+	 * @return interval in milliseconds, 0 if the client unsubscribed
+	 */
+	public long getIntervalMillis() {
+		return intervalMillis;
+	}
+
+	@Override
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("Metrics Subscribed");
+		writer.name("intervalMillis").value(getIntervalMillis());
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		out.property("intervalMillis", getIntervalMillis());
+		out.property("message", getMessage());
+	}
+
+}
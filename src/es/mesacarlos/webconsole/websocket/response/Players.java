@@ -1,11 +1,13 @@
 package es.mesacarlos.webconsole.websocket.response;
 
+import java.io.IOException;
 import java.util.List;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
-public class Players implements JSONOutput {
+public class Players implements MetricsOutput {
+	private static final Gson GSON = new Gson();
 
 	private final String message;
 	private final int connectedPlayers;
@@ -38,15 +40,23 @@ public class Players implements JSONOutput {
 	}
 
 	@Override
-	public String toJSON() {
-		JsonObject object = new JsonObject();
-		object.addProperty("status", getStatusCode());
-		object.addProperty("statusDescription", "Players");
-		object.addProperty("connectedPlayers", getConnectedPlayers());
-		object.addProperty("maxPlayers", getMaxPlayers());
-		object.addProperty("players", new Gson().toJson(connectedPlayersList));
-		object.addProperty("message", getMessage());
-		return object.toString();
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("Players");
+		writer.name("connectedPlayers").value(getConnectedPlayers());
+		writer.name("maxPlayers").value(getMaxPlayers());
+		writer.name("players").value(GSON.toJson(connectedPlayersList));
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+	
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		out.property("connectedPlayers", getConnectedPlayers());
+		out.property("maxPlayers", getMaxPlayers());
+		out.property("players", GSON.toJson(connectedPlayersList));
+		out.property("message", getMessage());
 	}
 
 }
\ No newline at end of file
@@ -1,8 +1,10 @@
 package es.mesacarlos.webconsole.websocket.response;
 
-import com.google.gson.JsonObject;
+import java.io.IOException;
 
-public class RamUsage implements JSONOutput {
+import com.google.gson.stream.JsonWriter;
+
+public class RamUsage implements MetricsOutput {
 
 	private final String message;
 	private final long free;
@@ -51,15 +53,23 @@ public class RamUsage implements JSONOutput {
 	}
 
 	@Override
-	public String toJSON() {
-		JsonObject object = new JsonObject();
-		object.addProperty("status", getStatusCode());
-		object.addProperty("statusDescription", "RAM Usage");
-		object.addProperty("free", getFree());
-		object.addProperty("used", getUsed());
-		object.addProperty("max", getMax());
-		object.addProperty("message", getMessage());
-		return object.toString();
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("RAM Usage");
+		writer.name("free").value(getFree());
+		writer.name("used").value(getUsed());
+		writer.name("max").value(getMax());
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+	
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		out.property("free", getFree());
+		out.property("used", getUsed());
+		out.property("max", getMax());
+		out.property("message", getMessage());
 	}
 
 }
\ No newline at end of file
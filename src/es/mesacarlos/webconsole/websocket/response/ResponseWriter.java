@@ -0,0 +1,280 @@
+package es.mesacarlos.webconsole.websocket.response;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Serializes responses with a streaming JsonWriter into buffers reused by each thread, so sending a response
+ * does not build a JsonObject tree nor copy a large payload through intermediate Strings.
+ * Large values such as files are streamed into the buffer with {@link #value(JsonWriter, StreamedString)}.
+ * Buffers grown by an unusually big response (a file read, for example) are released after use.
+ * The UTF-8 buffer is sized for ASCII, which JSON mostly is, and only grown when the payload needs more.
+ */
+public final class ResponseWriter {
+	private static final int INITIAL_CHARS = 4096;
+	private static final int MAX_RETAINED_CHARS = 1 << 20;
+	private static final ThreadLocal<ResponseWriter> WRITERS = ThreadLocal.withInitial(ResponseWriter::new);
+
+	private Chars chars = new Chars(INITIAL_CHARS);
+	private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_CHARS);
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private boolean busy;
+
+	private ResponseWriter() {
+	}
+
+	/**
+	 * Converts a response into JSON
+	 * @param output Response
+	 * @return JSON Object Stringified
+	 */
+	public static String toJSON(JSONOutput output) {
+		return toJSON(output, null);
+	}
+
+	/**
+	 * Converts a response to a request into JSON, echoing the request id as its first field
+	 * @param output Response
+	 * @param id Request id, or null if the request had none
+	 * @return JSON Object Stringified
+	 */
+	public static String toJSON(JSONOutput output, String id) {
+		ResponseWriter writer = acquire();
+		try {
+			Chars out = writer.write(output, id);
+			return new String(out.buffer(), 0, out.size());
+		} finally {
+			writer.release();
+		}
+	}
+
+	/**
+	 * Converts a response into UTF-8 encoded JSON, ready to be used as the payload of a text frame.
+	 * The returned buffer belongs to the calling thread and is overwritten by its next call, so it must be consumed before that.
+	 * @param output Response
+	 * @param id Request id echoed as the first field, or null if the request had none
+	 * @return Buffer holding the encoded JSON between its position and limit
+	 */
+	public static ByteBuffer toUtf8(JSONOutput output, String id) {
+		ResponseWriter writer = acquire();
+		try {
+			Chars out = writer.write(output, id);
+			return writer.encode(CharBuffer.wrap(out.buffer(), 0, out.size()));
+		} finally {
+			writer.release();
+		}
+	}
+
+	/**
+	 * Writes a string value piece by piece, escaping it straight into the response being serialized,
+	 * so it is never held as a whole String
+	 * @param writer Writer positioned where the value goes
+	 * @param value Value
+	 * @throws IOException if the value cannot be produced
+	 */
+	public static void value(JsonWriter writer, StreamedString value) throws IOException {
+		if (!(writer instanceof StreamingJsonWriter)) {
+			StringWriter text = new StringWriter();
+			value.writeTo(text);
+			writer.value(text.toString());
+			return;
+		}
+		Writer out = ((StreamingJsonWriter) writer).out;
+		writer.jsonValue("\""); // Writes the separators of a value and the opening quote
+		value.writeTo(new EscapingWriter(out));
+		out.write('"');
+	}
+
+	/**
+	 * Creates a writer for a JSON document nested in a value, which can stream its own values with {@link #value(JsonWriter, StreamedString)}
+	 * @param out Receives the document
+	 * @return JSON writer
+	 */
+	public static JsonWriter newJsonWriter(Writer out) {
+		JsonWriter writer = new StreamingJsonWriter(out);
+		writer.setLenient(true);
+		return writer;
+	}
+
+	private static ResponseWriter acquire() {
+		ResponseWriter writer = WRITERS.get();
+		if (writer.busy)
+			return new ResponseWriter(); // A response serialized while writing another one, do not share the buffers
+		writer.busy = true;
+		return writer;
+	}
+
+	private void release() {
+		busy = false;
+		if (chars.buffer().length > MAX_RETAINED_CHARS)
+			chars = new Chars(INITIAL_CHARS);
+		if (bytes.capacity() > MAX_RETAINED_CHARS)
+			bytes = ByteBuffer.allocate(INITIAL_CHARS); // The caller still holds the big one until it is sent
+	}
+
+	private Chars write(JSONOutput output, String id) {
+		chars.reset();
+		JsonWriter writer = id == null ? new StreamingJsonWriter(chars) : new RequestIdWriter(chars, id);
+		writer.setLenient(true); // Same as JsonElement.toString(), NaN and Infinity are written as is
+		try {
+			output.writeJSON(writer);
+			writer.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // Only thrown by a streamed value that could not be produced
+		}
+		return chars;
+	}
+
+	private ByteBuffer encode(CharBuffer in) {
+		if (bytes.capacity() < in.remaining())
+			bytes = ByteBuffer.allocate(in.remaining());
+		bytes.clear();
+		encoder.reset();
+		CoderResult result = encoder.encode(in, bytes, true);
+		while (result.isOverflow()) {
+			bytes = grow(bytes, in.remaining());
+			result = encoder.encode(in, bytes, true);
+		}
+		while (encoder.flush(bytes).isOverflow())
+			bytes = grow(bytes, 0);
+		bytes.flip();
+		return bytes;
+	}
+
+	/**
+	 * Copies the encoded bytes into a bigger buffer, by half its size or at least the chars still to encode
+	 * @param buffer Full buffer
+	 * @param remainingChars Chars not encoded yet
+	 * @return new buffer, positioned after the copied bytes
+	 */
+	private static ByteBuffer grow(ByteBuffer buffer, int remainingChars) {
+		long capacity = Math.max(buffer.capacity() + (buffer.capacity() >> 1), (long) buffer.position() + remainingChars + 16);
+		ByteBuffer grown = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8, capacity));
+		buffer.flip();
+		grown.put(buffer);
+		return grown;
+	}
+
+	/**
+	 * JsonWriter keeping its output, so streamed values can be written into it. JsonWriter does not buffer,
+	 * so characters written to the output between two calls land in between their text.
+	 */
+	private static class StreamingJsonWriter extends JsonWriter {
+		private final Writer out;
+
+		StreamingJsonWriter(Writer out) {
+			super(out);
+			this.out = out;
+		}
+	}
+
+	/**
+	 * JsonWriter adding the request id right after the opening brace of the response
+	 */
+	private static final class RequestIdWriter extends StreamingJsonWriter {
+		private String id;
+
+		RequestIdWriter(Writer out, String id) {
+			super(out);
+			this.id = id;
+		}
+
+		@Override
+		public JsonWriter beginObject() throws IOException {
+			super.beginObject();
+			if (id != null) {
+				String value = id;
+				id = null;
+				name(JSONOutput.ID_PROPERTY).value(value);
+			}
+			return this;
+		}
+	}
+
+	/**
+	 * Escapes the characters of a string value as JsonWriter does, without the quotes
+	 */
+	private static final class EscapingWriter extends Writer {
+		private final Writer out;
+
+		EscapingWriter(Writer out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			int end = off + len;
+			int last = off; // Start of the characters not written yet
+			for (int i = off; i < end; i++) {
+				String escaped = escape(cbuf[i]);
+				if (escaped == null)
+					continue;
+				out.write(cbuf, last, i - last);
+				out.write(escaped);
+				last = i + 1;
+			}
+			out.write(cbuf, last, end - last);
+		}
+
+		private static String escape(char c) {
+			switch (c) {
+			case '"':
+				return "\\\"";
+			case '\\':
+				return "\\\\";
+			case '\t':
+				return "\\t";
+			case '\b':
+				return "\\b";
+			case '\n':
+				return "\\n";
+			case '\r':
+				return "\\r";
+			case '\f':
+				return "\\f";
+			case '\u2028':
+				return "\\u2028";
+			case '\u2029':
+				return "\\u2029";
+			default:
+				return c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			// The response keeps being written after the value
+		}
+	}
+
+	/**
+	 * CharArrayWriter exposing its internal buffer, which avoids the copy made by toCharArray()
+	 */
+	private static final class Chars extends CharArrayWriter {
+		Chars(int size) {
+			super(size);
+		}
+
+		char[] buffer() {
+			return buf;
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package es.mesacarlos.webconsole.websocket.response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.stream.JsonWriter;
+
+import es.mesacarlos.webconsole.auth.ConnectedUser;
+import es.mesacarlos.webconsole.auth.LoginManager;
+import es.mesacarlos.webconsole.console.ConsoleBroadcaster;
+import es.mesacarlos.webconsole.util.MainThreadExecutor;
+import es.mesacarlos.webconsole.websocket.CommandExecutor;
+import es.mesacarlos.webconsole.websocket.CommandRateLimiter;
+import es.mesacarlos.webconsole.websocket.ConnectionAdmission;
+import es.mesacarlos.webconsole.websocket.DeflateExtension;
+import es.mesacarlos.webconsole.websocket.SendQueue;
+
+public class Stats implements JSONOutput {
+
+	private final String message;
+	private final ConsoleBroadcaster broadcaster;
+	private final Collection<SendQueue> sendQueues;
+	private final CommandExecutor commandExecutor;
+	private final MainThreadExecutor mainThreadExecutor;
+	private final ConnectionAdmission admission;
+	private final CommandRateLimiter rateLimiter;
+	
+	public Stats(String message, ConsoleBroadcaster broadcaster, Collection<SendQueue> sendQueues, CommandExecutor commandExecutor,
+			MainThreadExecutor mainThreadExecutor, ConnectionAdmission admission, CommandRateLimiter rateLimiter) {
+		this.message = message;
+		this.broadcaster = broadcaster;
+		this.sendQueues = sendQueues;
+		this.commandExecutor = commandExecutor;
+		this.mainThreadExecutor = mainThreadExecutor;
+		this.admission = admission;
+		this.rateLimiter = rateLimiter;
+	}
+	
+	@Override
+	public int getStatusCode() {
+		return 1004;
+	}
+
+	@Override
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("Stats");
+		
+		writer.name("console").beginObject();
+		writer.name("enqueued").value(broadcaster.getEnqueued());
+		writer.name("dropped").value(broadcaster.getDropped());
+		writer.name("pending").value(broadcaster.getQueueDepth());
+		writer.name("lagMillis").value(broadcaster.getLagMillis());
+		writer.name("maxLagMillis").value(broadcaster.getMaxLagMillis());
+		writer.name("collapsedLines").value(broadcaster.getStormGuard().getCollapsedLines());
+		writer.name("rateLimitedLines").value(broadcaster.getStormGuard().getRateLimitedLines());
+		writer.endObject();
+		
+		writer.name("commands").beginObject();
+		writer.name("virtualThreads").value(commandExecutor.isVirtualThreads());
+		writer.name("queued").value(commandExecutor.getQueuedCommands());
+		writer.name("types").beginArray();
+		for (CommandExecutor.Lane lane : commandExecutor.getLanes()) {
+			writer.beginObject();
+			writer.name("command").value(lane.getType());
+			writer.name("limit").value(lane.getLimit());
+			writer.name("running").value(lane.getRunning());
+			writer.name("queued").value(lane.getQueued());
+			writer.name("completed").value(lane.getCompleted());
+			writer.name("rejected").value(lane.getRejected());
+			writer.name("avgWaitMillis").value(lane.getAverageWaitMillis());
+			writer.name("maxWaitMillis").value(lane.getMaxWaitMillis());
+			writer.endObject();
+		}
+		writer.endArray();
+		writer.endObject();
+		
+		writer.name("mainThread").beginObject();
+		writer.name("budgetMillis").value(mainThreadExecutor.getBudgetMillis());
+		writer.name("queued").value(mainThreadExecutor.getQueueDepth());
+		writer.name("executed").value(mainThreadExecutor.getExecutedTasks());
+		writer.name("overBudgetTicks").value(mainThreadExecutor.getOverBudgetTicks());
+		writer.name("carriedOverTicks").value(mainThreadExecutor.getCarriedOverTicks());
+		writer.name("lastTickMillis").value(mainThreadExecutor.getLastTickMillis());
+		writer.name("maxTickMillis").value(mainThreadExecutor.getMaxTickMillis());
+		writer.endObject();
+		
+		writer.name("admission").beginObject();
+		writer.name("open").value(admission.getOpenConnections());
+		writer.name("maxTotal").value(admission.getMaxTotal());
+		writer.name("maxPerAddress").value(admission.getMaxPerAddress());
+		writer.name("rejectedTotal").value(admission.getRejectedTotal());
+		writer.name("rejectedPerAddress").value(admission.getRejectedPerAddress());
+		writer.endObject();
+		
+		writer.name("rateLimits").beginArray();
+		for (Map.Entry<String, AtomicLong> throttled : rateLimiter.getThrottled()) {
+			writer.beginObject();
+			writer.name("command").value(throttled.getKey());
+			writer.name("limit").value(rateLimiter.getLimit(throttled.getKey()));
+			writer.name("throttled").value(throttled.getValue().get());
+			writer.endObject();
+		}
+		writer.endArray();
+		
+		writer.name("globalBufferedBytes").value(SendQueue.getGlobalBufferedBytes());
+		writer.name("bytesBeforeCompression").value(DeflateExtension.getTotalBytesBefore());
+		writer.name("bytesAfterCompression").value(DeflateExtension.getTotalBytesAfter());
+		
+		writer.name("connections").beginArray();
+		for (SendQueue queue : sendQueues) {
+			ConnectedUser user = LoginManager.getInstance().getUser(queue.getConnection());
+			writer.beginObject();
+			writer.name("address").value(String.valueOf(queue.getConnection().getRemoteSocketAddress()));
+			writer.name("username").value(user == null ? null : user.getUsername());
+			writer.name("bufferedFrames").value(queue.getBufferedFrames());
+			writer.name("bufferedBytes").value(queue.measureBufferedBytes());
+			writer.name("pendingLines").value(queue.getPendingLines());
+			writer.name("coalescedLines").value(queue.getCoalescedLines());
+			writer.name("droppedLines").value(queue.getDroppedLines());
+			writer.name("droppedFrames").value(queue.getDroppedFrames());
+			writer.name("inFlight").value(queue.getInFlightRequests());
+			writer.name("throttled").value(queue.getRateLimits().getThrottledCommands());
+			DeflateExtension deflate = DeflateExtension.of(queue.getConnection());
+			writer.name("compressed").value(deflate != null);
+			if (deflate != null) {
+				writer.name("bytesBeforeCompression").value(deflate.getBytesBefore());
+				writer.name("bytesAfterCompression").value(deflate.getBytesAfter());
+			}
+			writer.endObject();
+		}
+		writer.endArray();
+		
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		out.field("console").beginObject();
+		out.property("enqueued", broadcaster.getEnqueued());
+		out.property("dropped", broadcaster.getDropped());
+		out.property("pending", broadcaster.getQueueDepth());
+		out.property("lagMillis", broadcaster.getLagMillis());
+		out.property("maxLagMillis", broadcaster.getMaxLagMillis());
+		out.property("collapsedLines", broadcaster.getStormGuard().getCollapsedLines());
+		out.property("rateLimitedLines", broadcaster.getStormGuard().getRateLimitedLines());
+		out.endObject();
+		
+		List<CommandExecutor.Lane> lanes = new ArrayList<CommandExecutor.Lane>(commandExecutor.getLanes());
+		out.field("commands").beginObject();
+		out.property("virtualThreads", commandExecutor.isVirtualThreads());
+		out.property("queued", commandExecutor.getQueuedCommands());
+		out.field("types").beginArray(lanes.size());
+		for (CommandExecutor.Lane lane : lanes) {
+			out.beginObject();
+			out.property("command", lane.getType());
+			out.property("limit", lane.getLimit());
+			out.property("running", lane.getRunning());
+			out.property("queued", lane.getQueued());
+			out.property("completed", lane.getCompleted());
+			out.property("rejected", lane.getRejected());
+			out.property("avgWaitMillis", lane.getAverageWaitMillis());
+			out.property("maxWaitMillis", lane.getMaxWaitMillis());
+			out.endObject();
+		}
+		out.endObject();
+		
+		out.field("mainThread").beginObject();
+		out.property("budgetMillis", mainThreadExecutor.getBudgetMillis());
+		out.property("queued", mainThreadExecutor.getQueueDepth());
+		out.property("executed", mainThreadExecutor.getExecutedTasks());
+		out.property("overBudgetTicks", mainThreadExecutor.getOverBudgetTicks());
+		out.property("carriedOverTicks", mainThreadExecutor.getCarriedOverTicks());
+		out.property("lastTickMillis", mainThreadExecutor.getLastTickMillis());
+		out.property("maxTickMillis", mainThreadExecutor.getMaxTickMillis());
+		out.endObject();
+		
+		out.field("admission").beginObject();
+		out.property("open", admission.getOpenConnections());
+		out.property("maxTotal", admission.getMaxTotal());
+		out.property("maxPerAddress", admission.getMaxPerAddress());
+		out.property("rejectedTotal", admission.getRejectedTotal());
+		out.property("rejectedPerAddress", admission.getRejectedPerAddress());
+		out.endObject();
+		
+		List<Map.Entry<String, AtomicLong>> throttledCommands = new ArrayList<Map.Entry<String, AtomicLong>>(rateLimiter.getThrottled());
+		out.field("rateLimits").beginArray(throttledCommands.size());
+		for (Map.Entry<String, AtomicLong> throttled : throttledCommands) {
+			out.beginObject();
+			out.property("command", throttled.getKey());
+			out.property("limit", rateLimiter.getLimit(throttled.getKey()));
+			out.property("throttled", throttled.getValue().get());
+			out.endObject();
+		}
+		
+		out.property("globalBufferedBytes", SendQueue.getGlobalBufferedBytes());
+		out.property("bytesBeforeCompression", DeflateExtension.getTotalBytesBefore());
+		out.property("bytesAfterCompression", DeflateExtension.getTotalBytesAfter());
+		
+		List<SendQueue> queues = new ArrayList<SendQueue>(sendQueues);
+		out.field("connections").beginArray(queues.size());
+		for (SendQueue queue : queues) {
+			ConnectedUser user = LoginManager.getInstance().getUser(queue.getConnection());
+			out.beginObject();
+			out.property("address", String.valueOf(queue.getConnection().getRemoteSocketAddress()));
+			out.property("username", user == null ? null : user.getUsername());
+			out.property("bufferedFrames", queue.getBufferedFrames());
+			out.property("bufferedBytes", queue.measureBufferedBytes());
+			out.property("pendingLines", queue.getPendingLines());
+			out.property("coalescedLines", queue.getCoalescedLines());
+			out.property("droppedLines", queue.getDroppedLines());
+			out.property("droppedFrames", queue.getDroppedFrames());
+			out.property("inFlight", queue.getInFlightRequests());
+			out.property("throttled", queue.getRateLimits().getThrottledCommands());
+			DeflateExtension deflate = DeflateExtension.of(queue.getConnection());
+			out.property("compressed", deflate != null);
+			if (deflate != null) {
+				out.property("bytesBeforeCompression", deflate.getBytesBefore());
+				out.property("bytesAfterCompression", deflate.getBytesAfter());
+			}
+			out.endObject();
+		}
+		
+		out.property("message", getMessage());
+	}
+
+}
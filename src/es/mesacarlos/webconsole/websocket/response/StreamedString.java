@@ -0,0 +1,58 @@
+package es.mesacarlos.webconsole.websocket.response;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * A string value too large to be worth holding as a String, like the content of a file. It is written piece by piece
+ * straight into the response being serialized, see {@link ResponseWriter#value(com.google.gson.stream.JsonWriter, StreamedString)}
+ * and {@link BinaryOutput#value(StreamedString)}.
+ */
+public interface StreamedString {
+	/**
+	 * Writes the characters of the value. It can be called once per encoding the response is sent in.
+	 * @param out Receives the characters, unescaped
+	 * @throws IOException if the value cannot be produced
+	 */
+	void writeTo(Writer out) throws IOException;
+
+	/**
+	 * Base64 encoding of some bytes, encoded a chunk at a time
+	 * @param bytes Raw bytes
+	 * @return value
+	 */
+	static StreamedString base64(byte[] bytes) {
+		return out -> {
+			int chunk = 3 * 4096; // Multiple of 3, so only the last chunk is padded
+			char[] chars = new char[4 * 4096];
+			for (int start = 0; start < bytes.length; start += chunk) {
+				byte[] encoded = Base64.getEncoder().encode(Arrays.copyOfRange(bytes, start, Math.min(bytes.length, start + chunk)));
+				for (int i = 0; i < encoded.length; i++)
+					chars[i] = (char) encoded[i];
+				out.write(chars, 0, encoded.length);
+			}
+		};
+	}
+
+	/**
+	 * UTF-8 text, decoded a chunk at a time
+	 * @param bytes UTF-8 encoded text
+	 * @return value
+	 */
+	static StreamedString utf8(byte[] bytes) {
+		return out -> {
+			char[] chars = new char[8192];
+			try (Reader in = new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)) {
+				int read;
+				while ((read = in.read(chars)) != -1)
+					out.write(chars, 0, read);
+			}
+		};
+	}
+}
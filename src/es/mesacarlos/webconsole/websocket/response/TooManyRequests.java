@@ -0,0 +1,73 @@
+package es.mesacarlos.webconsole.websocket.response;
+
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
+
+public class TooManyRequests implements JSONOutput {
+
+	private final String message;
+	private final String respondsTo;
+	private final long retryAfterMillis;
+	
+	public TooManyRequests(String message, String respondsTo) {
+		this(message, respondsTo, 0);
+	}
+	
+	/**
+	 * @param message Explanatory message
+	 * @param respondsTo Rejected command
+	 * @param retryAfterMillis Time until the command would be accepted, 0 if unknown
+	 */
+	public TooManyRequests(String message, String respondsTo, long retryAfterMillis) {
+		this.message = message;
+		this.respondsTo = respondsTo;
+		this.retryAfterMillis = retryAfterMillis;
+	}
+	
+	@Override
+	public int getStatusCode() {
+		return 429;
+	}
+	
+	@Override
+	public String getMessage() {
+		return message;
+	}
+	
+	/**
+	 * The command that was rejected
+	 * @return WebSockets command name
+	 */
+	public String getRespondsTo() {
+		return respondsTo;
+	}
+	
+	/**
+	 * Time the client should wait before sending the command again
+	 * @return milliseconds, 0 if unknown
+	 */
+	public long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+	
+	@Override
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("Too Many Requests");
+		writer.name("respondsTo").value(getRespondsTo());
+		if (getRetryAfterMillis() > 0)
+			writer.name("retryAfterMillis").value(getRetryAfterMillis());
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		out.property("respondsTo", getRespondsTo());
+		if (getRetryAfterMillis() > 0)
+			out.property("retryAfterMillis", getRetryAfterMillis());
+		out.property("message", getMessage());
+	}
+}
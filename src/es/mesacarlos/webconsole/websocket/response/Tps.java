@@ -8,16 +8,25 @@ package es.mesacarlos.webconsole.websocket.response;
 //
 //------------------------------
 
-import com.google.gson.JsonObject;
+import java.io.IOException;
 
-public class Tps implements JSONOutput {
+import com.google.gson.stream.JsonWriter;
+
+import es.mesacarlos.webconsole.util.TpsTracker;
+
+public class Tps implements MetricsOutput {
+
+    private static final String[] WINDOWS = { "5s", "1m", "5m", "15m" };
+    private static final String[] MSPT = { "min", "median", "p95", "p99", "max" };
 
     private final String message;
     private final double tps;
+    private final TpsTracker.Snapshot snapshot;
 
-    public Tps(String message, double tps) {
+    public Tps(String message, double tps, TpsTracker.Snapshot snapshot) {
         this.message = message;
         this.tps = tps;
+        this.snapshot = snapshot;
     }
 
     @Override
@@ -38,14 +47,68 @@ public class Tps implements JSONOutput {
         return tps;
     }
 
+    /**
+     * Gets TPS over the last 5 seconds, 1, 5 and 15 minutes, rounded to 2 decimals
+     * @return TPS by window
+     */
+    public double[] getWindows() {
+        return new double[] { round(snapshot.getTps5s()), round(snapshot.getTps1m()), round(snapshot.getTps5m()),
+                round(snapshot.getTps15m()) };
+    }
+
+    /**
+     * Gets milliseconds per tick over the last minute: min, median, p95, p99 and max
+     * @return MSPT statistics
+     */
+    public double[] getMspt() {
+        return new double[] { millis(snapshot.getMinTickNanos()), millis(snapshot.getMedianTickNanos()),
+                millis(snapshot.getP95TickNanos()), millis(snapshot.getP99TickNanos()), millis(snapshot.getMaxTickNanos()) };
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    private static double millis(long nanos) {
+        return round(nanos / 1_000_000.0);
+    }
+
+    @Override
+    public void writeJSON(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("status").value(getStatusCode());
+        writer.name("statusDescription").value("TPS Usage");
+        writer.name("tps").value(getTps());
+        double[] windows = getWindows();
+        writer.name("windows").beginObject();
+        for (int i = 0; i < WINDOWS.length; i++)
+            writer.name(WINDOWS[i]).value(windows[i]);
+        writer.endObject();
+        double[] mspt = getMspt();
+        writer.name("mspt").beginObject();
+        for (int i = 0; i < MSPT.length; i++)
+            writer.name(MSPT[i]).value(mspt[i]);
+        writer.endObject();
+        writer.name("ticks").value(snapshot.getTicks());
+        writer.name("message").value(getMessage());
+        writer.endObject();
+    }
+
     @Override
-    public String toJSON() {
-        JsonObject object = new JsonObject();
-        object.addProperty("status", getStatusCode());
-        object.addProperty("statusDescription", "TPS Usage");
-        object.addProperty("tps", getTps());
-        object.addProperty("message", getMessage());
-        return object.toString();
+    public void writeBinary(BinaryOutput out) {
+        out.property("tps", getTps());
+        double[] windows = getWindows();
+        out.field("windows").beginObject();
+        for (int i = 0; i < WINDOWS.length; i++)
+            out.property(WINDOWS[i], windows[i]);
+        out.endObject();
+        double[] mspt = getMspt();
+        out.field("mspt").beginObject();
+        for (int i = 0; i < MSPT.length; i++)
+            out.property(MSPT[i], mspt[i]);
+        out.endObject();
+        out.property("ticks", snapshot.getTicks());
+        out.property("message", getMessage());
     }
 
 }
@@ -1,6 +1,8 @@
 package es.mesacarlos.webconsole.websocket.response;
 
-import com.google.gson.JsonObject;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
 
 public class UnknownCommand implements JSONOutput {
 
@@ -31,12 +33,18 @@ public class UnknownCommand implements JSONOutput {
 	}
 	
 	@Override
-	public String toJSON() {
-		JsonObject object = new JsonObject();
-		object.addProperty("status", getStatusCode());
-		object.addProperty("statusDescription", "Unknown Command");
-		object.addProperty("respondsTo", getRespondsTo());
-		object.addProperty("message", getMessage());
-		return object.toString();
+	public void writeJSON(JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name("status").value(getStatusCode());
+		writer.name("statusDescription").value("Unknown Command");
+		writer.name("respondsTo").value(getRespondsTo());
+		writer.name("message").value(getMessage());
+		writer.endObject();
+	}
+
+	@Override
+	public void writeBinary(BinaryOutput out) {
+		out.property("respondsTo", getRespondsTo());
+		out.property("message", getMessage());
 	}
 }
\ No newline at end of file